@@ -0,0 +1,213 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Content hashes of a set of files, used to find out which files changed since a baseline. Contents are hashed with
+ * 64-bit FNV-1a.
+ */
+public final class FileHashManifest {
+
+  private final Map<String, String> hashes = new TreeMap<String, String>();
+
+  /**
+   * Computes the manifest of the given files.
+   *
+   * @param baseDir
+   *          the directory the recorded paths are relative to
+   * @param files
+   *          the files to hash
+   * @return the manifest
+   * @throws IOException
+   *           if one of the files cannot be read
+   */
+  public static FileHashManifest compute(File baseDir, Collection<File> files) throws IOException {
+    FileHashManifest manifest = new FileHashManifest();
+    for (File file : files) {
+      manifest.put(relativePath(baseDir, file), hash(file));
+    }
+    return manifest;
+  }
+
+  /**
+   * Loads a manifest previously saved with {@link #save(File)}.
+   *
+   * @param manifestFile
+   *          the manifest file
+   * @return the manifest, empty if the file does not exist
+   * @throws IOException
+   *           if the file cannot be read
+   */
+  public static FileHashManifest load(File manifestFile) throws IOException {
+    FileHashManifest manifest = new FileHashManifest();
+    if (!manifestFile.isFile()) {
+      return manifest;
+    }
+    Properties properties = new Properties();
+    InputStream in = null;
+    try {
+      in = new FileInputStream(manifestFile);
+      properties.load(in);
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+    for (Enumeration<?> paths = properties.propertyNames(); paths.hasMoreElements();) {
+      String path = (String) paths.nextElement();
+      manifest.put(path, properties.getProperty(path));
+    }
+    return manifest;
+  }
+
+  /**
+   * Returns the hash of the content of a file.
+   */
+  public static String hash(File file) throws IOException {
+    if (!file.isFile()) {
+      return "missing";
+    }
+    InputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      return hash(in);
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  /**
+   * Returns the hash of a text that is not stored in a file, such as a command line, as if it was a UTF-8 file.
+   */
+  public static String hash(String content) throws IOException {
+    return hash(new ByteArrayInputStream(content.getBytes("UTF-8")));
+  }
+
+  private static String hash(InputStream in) throws IOException {
+    byte[] buffer = new byte[8192];
+    long hash = Fnv1aHash.OFFSET_BASIS;
+    int read;
+    while ((read = in.read(buffer)) >= 0) {
+      hash = Fnv1aHash.hash(hash, buffer, 0, read);
+    }
+    return Long.toHexString(hash);
+  }
+
+  /**
+   * Returns the normalized path of a file relative to a base directory, or its absolute path if it lies outside of it.
+   */
+  public static String relativePath(File baseDir, File file) {
+    String base = FilenameUtils.separatorsToUnix(baseDir.getAbsolutePath());
+    String path = FilenameUtils.separatorsToUnix(file.getAbsolutePath());
+    if (path.startsWith(base + "/")) {
+      path = path.substring(base.length() + 1);
+    }
+    return path;
+  }
+
+  /**
+   * Records the hash of an entry.
+   */
+  public void put(String path, String hash) {
+    hashes.put(path, hash);
+  }
+
+  /**
+   * @return the recorded hash, or null if the entry is unknown
+   */
+  public String get(String path) {
+    return hashes.get(path);
+  }
+
+  public boolean isEmpty() {
+    return hashes.isEmpty();
+  }
+
+  /**
+   * @return a hash of all the entries of this manifest, which changes as soon as one of them is added, modified or removed
+   */
+  public String digest() {
+    long hash = Fnv1aHash.OFFSET_BASIS;
+    for (Map.Entry<String, String> entry : hashes.entrySet()) {
+      hash = Fnv1aHash.separate(Fnv1aHash.hash(hash, entry.getKey()));
+      hash = Fnv1aHash.separate(Fnv1aHash.hash(hash, entry.getValue()));
+    }
+    return Long.toHexString(hash);
+  }
+
+  /**
+   * Returns the entries that were added, modified or removed since the given baseline.
+   *
+   * @param baseline
+   *          the previous manifest
+   * @return the changed entries, sorted
+   */
+  public Set<String> changedSince(FileHashManifest baseline) {
+    Set<String> changed = new TreeSet<String>();
+    for (Map.Entry<String, String> entry : hashes.entrySet()) {
+      if (!entry.getValue().equals(baseline.hashes.get(entry.getKey()))) {
+        changed.add(entry.getKey());
+      }
+    }
+    for (String path : baseline.hashes.keySet()) {
+      if (!hashes.containsKey(path)) {
+        changed.add(path);
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Saves this manifest.
+   *
+   * @param manifestFile
+   *          the destination file
+   * @throws IOException
+   *           if the file cannot be written
+   */
+  public void save(File manifestFile) throws IOException {
+    Properties properties = new Properties();
+    properties.putAll(hashes);
+    OutputStream out = null;
+    try {
+      out = new FileOutputStream(manifestFile);
+      properties.store(out, "ReSharper inspection baseline");
+    } finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+/**
+ * 64-bit FNV-1a hashing, used to identify issues and reports with a long rather than with the strings they are made of.
+ * A hash starts from {@link #OFFSET_BASIS} and is extended one character, string or long at a time.
+ */
+public final class Fnv1aHash {
+
+  public static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+
+  private static final long PRIME = 0x100000001b3L;
+
+  /**
+   * Not a char of any string read from XML, ends each string so that ("ab", "c") and ("a", "bc") hash differently.
+   */
+  private static final char SEPARATOR = 0xffff;
+
+  private Fnv1aHash() {
+  }
+
+  /**
+   * Extends a hash with one character.
+   */
+  public static long hash(long hash, char c) {
+    return (hash ^ c) * PRIME;
+  }
+
+  /**
+   * Extends a hash with a string and a separator. A null string hashes as an empty one.
+   */
+  public static long hash(long hash, String value) {
+    long result = hash;
+    if (value != null) {
+      for (int i = 0; i < value.length(); i++) {
+        result = (result ^ value.charAt(i)) * PRIME;
+      }
+    }
+    return separate(result);
+  }
+
+  /**
+   * Extends a hash with bytes, such as the content of a file. Unlike strings, they are not followed by a separator.
+   */
+  public static long hash(long hash, byte[] bytes, int offset, int length) {
+    long result = hash;
+    for (int i = offset; i < offset + length; i++) {
+      result = (result ^ (bytes[i] & 0xff)) * PRIME;
+    }
+    return result;
+  }
+
+  /**
+   * Extends a hash with another 64-bit value, such as the hash of a nested element.
+   */
+  public static long hash(long hash, long value) {
+    return (hash ^ value) * PRIME;
+  }
+
+  /**
+   * Ends a value hashed character by character with {@link #hash(long, char)}.
+   */
+  public static long separate(long hash) {
+    return (hash ^ SEPARATOR) * PRIME;
+  }
+
+}
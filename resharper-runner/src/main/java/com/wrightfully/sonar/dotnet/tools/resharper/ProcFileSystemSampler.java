@@ -0,0 +1,285 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.utils.command.Command;
+import org.sonar.api.utils.command.CommandExecutor;
+import org.sonar.api.utils.command.StreamConsumer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ProcessResourceSampler} reading the Linux /proc file system. Every process descending from the current JVM is
+ * accounted for, which covers inspectcode itself as well as any wrapper (mono, shell script...) used to launch it. The CPU
+ * time of the children that exited before being sampled is still known from the CPU time the parent collected from them.
+ */
+public class ProcFileSystemSampler implements ProcessResourceSampler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProcFileSystemSampler.class);
+
+  /**
+   * The CPU times of /proc are counted in USER_HZ clock ticks, which is 100 on every mainstream Linux kernel.
+   */
+  static final long DEFAULT_CLOCK_TICKS_PER_SECOND = 100;
+
+  private static final long GETCONF_TIMEOUT_MILLISECONDS = 10000;
+
+  private final File procDir;
+  private final String parentPid;
+  private final long clockTicksPerSecond;
+
+  private final Map<String, long[]> usageByPid = new HashMap<String, long[]>();
+  private long initialChildrenTicks;
+
+  private static final int CPU_TICKS = 0;
+  private static final int PEAK_RSS_KB = 1;
+  private static final int READ_BYTES = 2;
+  private static final int WRITTEN_BYTES = 3;
+
+  /**
+   * Creates a sampler for the children of the current JVM.
+   */
+  public ProcFileSystemSampler() {
+    this(new File("/proc"), currentPid(new File("/proc")), clockTicksPerSecond());
+  }
+
+  /**
+   * Creates a sampler for the children of the given process, using the given directory as /proc root.
+   *
+   * @param procDir
+   *          the /proc root
+   * @param parentPid
+   *          the pid whose descendants are sampled
+   * @param clockTicksPerSecond
+   *          the unit of the CPU times of /proc, as returned by getconf CLK_TCK
+   */
+  public ProcFileSystemSampler(File procDir, String parentPid, long clockTicksPerSecond) {
+    this.procDir = procDir;
+    this.parentPid = parentPid;
+    this.clockTicksPerSecond = clockTicksPerSecond;
+  }
+
+  /**
+   * @return true if a readable /proc file system is available on this machine
+   */
+  public static boolean isSupported() {
+    return new File("/proc/self/stat").canRead();
+  }
+
+  /**
+   * @return the USER_HZ of the kernel, as returned by getconf CLK_TCK, or {@link #DEFAULT_CLOCK_TICKS_PER_SECOND} if it
+   *         cannot be run
+   */
+  private static long clockTicksPerSecond() {
+    final StringBuilder output = new StringBuilder();
+    StreamConsumer outputConsumer = new StreamConsumer() {
+      public void consumeLine(String line) {
+        output.append(line.trim());
+      }
+    };
+    StreamConsumer errorConsumer = new StreamConsumer() {
+      public void consumeLine(String line) {
+        LOG.debug("getconf: " + line);
+      }
+    };
+    try {
+      Command command = Command.create("getconf").addArgument("CLK_TCK");
+      if (CommandExecutor.create().execute(command, outputConsumer, errorConsumer, GETCONF_TIMEOUT_MILLISECONDS) == 0) {
+        long clockTicks = parseLong(output.toString());
+        if (clockTicks > 0) {
+          return clockTicks;
+        }
+      }
+    } catch (RuntimeException e) {
+      LOG.debug("Unable to run getconf CLK_TCK: " + e.getMessage());
+    }
+    LOG.debug("Unknown USER_HZ, assuming " + DEFAULT_CLOCK_TICKS_PER_SECOND);
+    return DEFAULT_CLOCK_TICKS_PER_SECOND;
+  }
+
+  private static String currentPid(File procDir) {
+    try {
+      return new File(procDir, "self").getCanonicalFile().getName();
+    } catch (IOException e) {
+      LOG.debug("Unable to resolve the current pid: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized void start() {
+    usageByPid.clear();
+    initialChildrenTicks = childrenTicks();
+  }
+
+  /**
+   * @return the CPU ticks of the exited children of the parent process
+   */
+  private long childrenTicks() {
+    String[] stat = parentPid == null ? null : readStat(new File(procDir, parentPid));
+    // cutime (14th field after the command name) and cstime (15th)
+    return stat != null && stat.length > 14 ? parseLong(stat[13]) + parseLong(stat[14]) : 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized void sample() {
+    if (parentPid == null) {
+      return;
+    }
+    Map<String, List<String>> childrenByPid = new HashMap<String, List<String>>();
+    Map<String, String[]> statByPid = new HashMap<String, String[]>();
+    File[] processDirs = procDir.listFiles();
+    if (processDirs == null) {
+      return;
+    }
+    for (File processDir : processDirs) {
+      String pid = processDir.getName();
+      if (!StringUtils.isNumeric(pid)) {
+        continue;
+      }
+      String[] stat = readStat(processDir);
+      if (stat == null) {
+        continue;
+      }
+      statByPid.put(pid, stat);
+      List<String> children = childrenByPid.get(stat[1]);
+      if (children == null) {
+        children = new ArrayList<String>();
+        childrenByPid.put(stat[1], children);
+      }
+      children.add(pid);
+    }
+
+    List<String> pending = new ArrayList<String>();
+    addAll(pending, childrenByPid.get(parentPid));
+    while (!pending.isEmpty()) {
+      String pid = pending.remove(pending.size() - 1);
+      record(pid, statByPid.get(pid));
+      addAll(pending, childrenByPid.get(pid));
+    }
+  }
+
+  private static void addAll(List<String> target, List<String> values) {
+    if (values != null) {
+      target.addAll(values);
+    }
+  }
+
+  private void record(String pid, String[] stat) {
+    long[] usage = usageByPid.get(pid);
+    if (usage == null) {
+      usage = new long[] {0, 0, 0, 0};
+      usageByPid.put(pid, usage);
+    }
+    // fields following the command name: state, ppid, ..., utime (12th), stime (13th)
+    if (stat.length > 12) {
+      long ticks = parseLong(stat[11]) + parseLong(stat[12]);
+      usage[CPU_TICKS] = Math.max(usage[CPU_TICKS], ticks);
+    }
+
+    File processDir = new File(procDir, pid);
+    String status = readQuietly(new File(processDir, "status"));
+    usage[PEAK_RSS_KB] = Math.max(usage[PEAK_RSS_KB], parseField(status, "VmHWM:"));
+    String io = readQuietly(new File(processDir, "io"));
+    usage[READ_BYTES] = Math.max(usage[READ_BYTES], parseField(io, "read_bytes:"));
+    usage[WRITTEN_BYTES] = Math.max(usage[WRITTEN_BYTES], parseField(io, "write_bytes:"));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized ProcessResourceUsage stop() {
+    sample();
+    long exitedChildrenTicks = childrenTicks() - initialChildrenTicks;
+    if (usageByPid.isEmpty()) {
+      if (exitedChildrenTicks <= 0) {
+        return ProcessResourceUsage.NOT_MEASURED;
+      }
+      long unknown = ProcessResourceUsage.UNKNOWN;
+      return new ProcessResourceUsage(toMilliseconds(exitedChildrenTicks), unknown, unknown, unknown);
+    }
+    long[] total = new long[] {0, 0, 0, 0};
+    for (long[] usage : usageByPid.values()) {
+      for (int i = 0; i < total.length; i++) {
+        total[i] += usage[i];
+      }
+    }
+    long cpuTicks = Math.max(total[CPU_TICKS], exitedChildrenTicks);
+    return new ProcessResourceUsage(toMilliseconds(cpuTicks), total[PEAK_RSS_KB], total[READ_BYTES], total[WRITTEN_BYTES]);
+  }
+
+  private long toMilliseconds(long clockTicks) {
+    return clockTicks * 1000 / clockTicksPerSecond;
+  }
+
+  /**
+   * Returns the fields of /proc/[pid]/stat that follow the command name, which may itself contain spaces.
+   */
+  private static String[] readStat(File processDir) {
+    String stat = readQuietly(new File(processDir, "stat"));
+    int commandEnd = stat.lastIndexOf(')');
+    if (commandEnd < 0) {
+      return null;
+    }
+    String[] fields = StringUtils.split(stat.substring(commandEnd + 1));
+    return fields.length > 1 ? fields : null;
+  }
+
+  private static long parseField(String content, String name) {
+    int start = content.indexOf(name);
+    if (start < 0) {
+      return 0;
+    }
+    int end = content.indexOf('\n', start);
+    String value = content.substring(start + name.length(), end < 0 ? content.length() : end);
+    return parseLong(StringUtils.removeEnd(value.trim(), "kB").trim());
+  }
+
+  private static long parseLong(String value) {
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static String readQuietly(File file) {
+    try {
+      return FileUtils.readFileToString(file);
+    } catch (IOException e) {
+      // the process exited or the file is not readable by the current user
+      return "";
+    }
+  }
+
+}
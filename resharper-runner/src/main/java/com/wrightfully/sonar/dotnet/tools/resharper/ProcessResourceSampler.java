@@ -0,0 +1,47 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+/**
+ * Samples the resources consumed by the child processes launched while ReSharper inspectcode runs.
+ * <br/>
+ * {@link ReSharperRunner} calls {@link #start()} right before launching inspectcode, {@link #sample()} periodically while it
+ * runs, and {@link #stop()} once it has exited. The calls are never concurrent.
+ */
+public interface ProcessResourceSampler {
+
+  /**
+   * Resets the sampler before a new execution.
+   */
+  void start();
+
+  /**
+   * Takes a snapshot of the resources currently consumed by the child processes.
+   */
+  void sample();
+
+  /**
+   * Takes a last snapshot and returns the resources consumed since {@link #start()}.
+   *
+   * @return the accumulated usage, never null
+   */
+  ProcessResourceUsage stop();
+
+}
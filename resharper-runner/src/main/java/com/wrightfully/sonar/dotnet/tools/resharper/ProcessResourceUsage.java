@@ -0,0 +1,80 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+/**
+ * Resources consumed by the child processes of a ReSharper inspectcode execution. A value of {@link #UNKNOWN} means the
+ * sampler was not able to measure it.
+ */
+public final class ProcessResourceUsage {
+
+  public static final long UNKNOWN = -1;
+
+  /**
+   * Usage returned by samplers that cannot measure anything on the current platform.
+   */
+  public static final ProcessResourceUsage NOT_MEASURED = new ProcessResourceUsage(UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN);
+
+  private final long cpuTimeMillis;
+  private final long peakResidentKilobytes;
+  private final long readBytes;
+  private final long writtenBytes;
+
+  public ProcessResourceUsage(long cpuTimeMillis, long peakResidentKilobytes, long readBytes, long writtenBytes) {
+    this.cpuTimeMillis = cpuTimeMillis;
+    this.peakResidentKilobytes = peakResidentKilobytes;
+    this.readBytes = readBytes;
+    this.writtenBytes = writtenBytes;
+  }
+
+  /**
+   * @return the user + system CPU time, in milliseconds
+   */
+  public long getCpuTimeMillis() {
+    return cpuTimeMillis;
+  }
+
+  /**
+   * @return the peak resident memory, in kilobytes
+   */
+  public long getPeakResidentKilobytes() {
+    return peakResidentKilobytes;
+  }
+
+  /**
+   * @return the number of bytes read from storage
+   */
+  public long getReadBytes() {
+    return readBytes;
+  }
+
+  /**
+   * @return the number of bytes written to storage
+   */
+  public long getWrittenBytes() {
+    return writtenBytes;
+  }
+
+  @Override
+  public String toString() {
+    return "cpu=" + cpuTimeMillis + "ms, peakRss=" + peakResidentKilobytes + "kB, read=" + readBytes + "B, written=" + writtenBytes + "B";
+  }
+
+}
@@ -19,17 +19,37 @@
  */
 package com.wrightfully.sonar.dotnet.tools.resharper;
 
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.SonarException;
 import org.sonar.api.utils.command.Command;
+import org.sonar.plugins.dotnet.api.microsoft.SourceFile;
 import org.sonar.plugins.dotnet.api.microsoft.VisualStudioProject;
 import org.sonar.plugins.dotnet.api.microsoft.VisualStudioSolution;
 import org.sonar.plugins.dotnet.api.utils.FileFinder;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Class used to build the command line to run ReSharper inspectcoe.
@@ -38,13 +58,36 @@ public final class ReSharperCommandBuilder {
 
   private static final Logger LOG = LoggerFactory.getLogger(ReSharperCommandBuilder.class);
 
+  static final String BASELINE_MANIFEST_SUFFIX = ".baseline.properties";
+  static final String BASELINE_REPORT_SUFFIX = ".baseline";
+  static final String PARTIAL_REPORT_SUFFIX = ".partial";
+  private static final String COMMAND_LINE_ENTRY = "#command";
+
+  /**
+   * Beyond this length, the inspectcode parameters are passed through a /config file. cmd.exe rejects command lines longer
+   * than 8191 characters.
+   */
+  static final int MAX_COMMAND_LINE_LENGTH = 8000;
+  static final String CONFIG_FILE_SUFFIX = ".config.xml";
+
   private File resharperReportFile;
   protected File executable;
 
   private VisualStudioSolution solution;
   private VisualStudioProject vsProject;
   private String dotSettingsFilePath;
+  private File dotSettingsFile;
   private String cmdArgs;
+  private boolean changedFilesOnly;
+  private File settingsFile;
+  private boolean useConfigFile;
+  private boolean configFileUsed;
+  private boolean noSolutionWideAnalysis;
+  private final List<String> projectWildcards = new ArrayList<String>();
+  private final Map<String, String> msBuildProperties = new LinkedHashMap<String, String>();
+  private final List<String> extensions = new ArrayList<String>();
+  private Map<VisualStudioProject, List<VisualStudioProject>> projectReferences;
+  private Map<String, Set<VisualStudioProject>> projectsByEntry;
 
   private ReSharperCommandBuilder() {
   }
@@ -78,11 +121,37 @@ public final class ReSharperCommandBuilder {
         return this;
     }
 
+  /**
+   * @return the report file to generate
+   */
+  File getReportFile() {
+    return resharperReportFile;
+  }
+
+  /**
+   * @return the name of the VS project to analyze, or the project wildcards when no VS project was given
+   */
+  String getProjectName() {
+    return vsProject != null ? vsProject.getName() : StringUtils.join(projectWildcards, ';');
+  }
+
     public ReSharperCommandBuilder setDotSettingsFilePath(String settingsFile) {
       this.dotSettingsFilePath = settingsFile;
       return this;
     }
 
+  /**
+   * Sets the dotSettings file to use when no dotSettings file path is set.
+   *
+   * @param settingsFile
+   *          the dotSettings file, generated for instance from the Sonar profile
+   * @return the current builder
+   */
+  public ReSharperCommandBuilder setDotSettingsFile(File settingsFile) {
+    this.dotSettingsFile = settingsFile;
+    return this;
+  }
+
     /**
      * Sets the executable
      *
@@ -104,12 +173,261 @@ public final class ReSharperCommandBuilder {
     }
 
 
+  /**
+   * Adds a project wildcard to inspect, on top of the VS project given at creation time.
+   *
+   * @param projectWildcard
+   *          the project name or wildcard
+   * @return the current builder
+   */
+  public ReSharperCommandBuilder addProjectWildcard(String projectWildcard) {
+    projectWildcards.add(projectWildcard);
+    return this;
+  }
+
+  /**
+   * Sets an MSBuild property passed to inspectcode.
+   *
+   * @param name
+   *          the property name
+   * @param value
+   *          the property value
+   * @return the current builder
+   */
+  public ReSharperCommandBuilder setMsBuildProperty(String name, String value) {
+    msBuildProperties.put(name, value);
+    return this;
+  }
+
+  /**
+   * Adds a ReSharper extension to install and use during the inspection.
+   *
+   * @param extension
+   *          the extension id
+   * @return the current builder
+   */
+  public ReSharperCommandBuilder addExtension(String extension) {
+    extensions.add(extension);
+    return this;
+  }
+
+  /**
+   * Disables the solution-wide analysis, which is only needed by the inspections of non-private symbol usages.
+   *
+   * @param noSolutionWideAnalysis
+   *          true to pass /no-swea
+   * @return the current builder
+   */
+  public ReSharperCommandBuilder setNoSolutionWideAnalysis(boolean noSolutionWideAnalysis) {
+    this.noSolutionWideAnalysis = noSolutionWideAnalysis;
+    return this;
+  }
+
+  /**
+   * Forces the inspectcode parameters to be passed through a generated /config file. This happens anyway when the command
+   * line would exceed {@link #MAX_COMMAND_LINE_LENGTH} characters.
+   *
+   * @param useConfigFile
+   *          true to always generate a /config file
+   * @return the current builder
+   */
+  public ReSharperCommandBuilder setUseConfigFile(boolean useConfigFile) {
+    this.useConfigFile = useConfigFile;
+    return this;
+  }
+
+  /**
+   * @return the /config file generated next to the report file
+   */
+  File getConfigFile() {
+    return configFileOf(resharperReportFile);
+  }
+
+  private static File configFileOf(File reportFile) {
+    return new File(reportFile.getAbsolutePath() + CONFIG_FILE_SUFFIX);
+  }
+
+  /**
+   * Restricts the inspection to the files changed since the previous inspection of the project. ReSharper inspectcode can
+   * only narrow its scope down to projects: only the projects whose issues may have changed are inspected again (see
+   * {@link #findProjectsToInspect(Set)}), and their issues are merged with the ones of the other projects in the previous
+   * report.
+   *
+   * @param changedFilesOnly
+   *          true to only inspect changed files
+   * @return the current builder
+   */
+  public ReSharperCommandBuilder setChangedFilesOnly(boolean changedFilesOnly) {
+    this.changedFilesOnly = changedFilesOnly;
+    return this;
+  }
+
+  boolean isChangedFilesOnly() {
+    return changedFilesOnly;
+  }
+
+  /**
+   * @return the manifest of the previous inspection, stored next to the report file
+   */
+  File getBaselineManifestFile() {
+    return new File(resharperReportFile.getAbsolutePath() + BASELINE_MANIFEST_SUFFIX);
+  }
+
+  /**
+   * @return the copy of the report generated by the previous inspection
+   */
+  File getBaselineReportFile() {
+    return new File(resharperReportFile.getAbsolutePath() + BASELINE_REPORT_SUFFIX);
+  }
+
+  /**
+   * @return the report of the projects inspected again, to be merged with the previous report
+   */
+  File getPartialReportFile() {
+    return new File(resharperReportFile.getAbsolutePath() + PARTIAL_REPORT_SUFFIX);
+  }
+
+  /**
+   * Computes the manifest of everything that can change the result of the given command: the source files and project files
+   * of the inspected projects and of the projects they depend on, the dotSettings file, the /config file and the command
+   * line itself. The solution-wide analysis reports the usages of symbols by any project, so that all the projects of the
+   * solution are hashed unless it is disabled.
+   *
+   * @param command
+   *          the command built by {@link #toCommand()}
+   * @return the manifest
+   * @throws IOException
+   *           if one of the files cannot be read
+   */
+  FileHashManifest computeInspectionManifest(Command command) throws IOException {
+    projectReferences = VisualStudioProjectReferences.read(solution, noSolutionWideAnalysis ? scopeProjects() : solution.getProjects());
+    projectsByEntry = new HashMap<String, Set<VisualStudioProject>>();
+    List<File> files = new ArrayList<File>();
+    for (VisualStudioProject project : projectReferences.keySet()) {
+      for (SourceFile sourceFile : project.getSourceFiles()) {
+        addProjectFile(files, project, sourceFile.getFile());
+      }
+      if (project.getProjectFile() != null) {
+        addProjectFile(files, project, project.getProjectFile());
+      }
+    }
+    if (settingsFile != null) {
+      files.add(settingsFile);
+    }
+    if (configFileUsed) {
+      files.add(getConfigFile());
+    }
+    FileHashManifest manifest = FileHashManifest.compute(solution.getSolutionDir(), files);
+    manifest.put(COMMAND_LINE_ENTRY, FileHashManifest.hash(command.toCommandLine()));
+    return manifest;
+  }
+
+  private void addProjectFile(List<File> files, VisualStudioProject project, File file) {
+    files.add(file);
+    String entry = FileHashManifest.relativePath(solution.getSolutionDir(), file);
+    Set<VisualStudioProject> projects = projectsByEntry.get(entry);
+    if (projects == null) {
+      // a file can be linked by several projects
+      projects = new HashSet<VisualStudioProject>();
+      projectsByEntry.put(entry, projects);
+    }
+    projects.add(project);
+  }
+
+  /**
+   * Finds the projects to inspect again after the given entries of the last manifest computed by
+   * {@link #computeInspectionManifest(Command)} changed: the projects of the changed files, the projects referencing them,
+   * directly or not, and, as the solution-wide analysis reports the unused symbols of the projects they use, the projects
+   * they reference.
+   *
+   * @param changedEntries
+   *          the entries changed since the manifest of the previous inspection
+   * @return the names of the projects to inspect again, or null if the whole scope must be inspected again
+   */
+  Set<String> findProjectsToInspect(Set<String> changedEntries) {
+    Set<VisualStudioProject> changedProjects = new HashSet<VisualStudioProject>();
+    for (String entry : changedEntries) {
+      Set<VisualStudioProject> projects = projectsByEntry.get(entry);
+      if (projects == null) {
+        LOG.debug("{} changed, every project will be inspected", entry);
+        return null;
+      }
+      changedProjects.addAll(projects);
+    }
+
+    Set<VisualStudioProject> projectsToInspect = new HashSet<VisualStudioProject>(changedProjects);
+    boolean added = true;
+    while (added) {
+      added = false;
+      for (Map.Entry<VisualStudioProject, List<VisualStudioProject>> references : projectReferences.entrySet()) {
+        if (!projectsToInspect.contains(references.getKey()) && !Collections.disjoint(references.getValue(), projectsToInspect)) {
+          projectsToInspect.add(references.getKey());
+          added = true;
+        }
+      }
+    }
+    if (!noSolutionWideAnalysis) {
+      List<VisualStudioProject> pending = new ArrayList<VisualStudioProject>(changedProjects);
+      while (!pending.isEmpty()) {
+        for (VisualStudioProject referencedProject : projectReferences.get(pending.remove(pending.size() - 1))) {
+          if (projectsToInspect.add(referencedProject)) {
+            pending.add(referencedProject);
+          }
+        }
+      }
+    }
+
+    Collection<VisualStudioProject> scope = scopeProjects();
+    Set<String> result = new TreeSet<String>();
+    for (VisualStudioProject project : scope) {
+      if (projectsToInspect.contains(project)) {
+        result.add(project.getName());
+      }
+    }
+    return result.size() < scope.size() ? result : null;
+  }
+
+  /**
+   * @return the projects inspected by {@link #toCommand()}: the VS project and the projects matching the wildcards, or all
+   *         the projects of the solution when none is given
+   */
+  private Collection<VisualStudioProject> scopeProjects() {
+    if (vsProject == null && projectWildcards.isEmpty()) {
+      return solution.getProjects();
+    }
+    Set<VisualStudioProject> projects = new LinkedHashSet<VisualStudioProject>();
+    if (vsProject != null) {
+      projects.add(vsProject);
+    }
+    for (VisualStudioProject project : solution.getProjects()) {
+      for (String projectWildcard : projectWildcards) {
+        if (FilenameUtils.wildcardMatch(project.getName(), projectWildcard, IOCase.INSENSITIVE)) {
+          projects.add(project);
+          break;
+        }
+      }
+    }
+    return projects;
+  }
+
     /**
    * Transforms this command object into a array of string that can be passed to the CommandExecutor.
    *
    * @return the Command that represent the command to launch.
    */
   public Command toCommand() throws ReSharperException {
+    List<String> projects = new ArrayList<String>();
+    if (vsProject != null) {
+      projects.add(vsProject.getName());
+    }
+    projects.addAll(projectWildcards);
+    return toCommand(projects, resharperReportFile);
+  }
+
+  /**
+   * Builds the command inspecting the given projects into the given report, e.g. the projects of the scope to inspect again.
+   */
+  Command toCommand(Collection<String> projects, File reportFile) throws ReSharperException {
 
 //    $> c:\ThirdPartyTools\jb-commandline-8.1.23.523\inspectcode.exe /help
 //    InspectCode 8.1.23.523
@@ -137,11 +455,9 @@ public final class ReSharperCommandBuilder {
 
     LOG.debug("- ReSharper program         : " + executable);
     Command command = Command.create(executable.getAbsolutePath());
+    LOG.debug("- Project name(s)           : " + projects);
 
-    LOG.debug("- Project name              : " + vsProject.getName());
-    command.addArgument("/project=" + vsProject.getName());
-
-    boolean settingsFileFound = false;
+    settingsFile = null;
     if (dotSettingsFilePath != null && !StringUtils.isEmpty(dotSettingsFilePath)) {
 
       Collection<File> settingsFiles = FileFinder.findFiles(solution, vsProject, dotSettingsFilePath);
@@ -150,19 +466,53 @@ public final class ReSharperCommandBuilder {
       }
 
       if (settingsFiles.size() == 1) {
-        File settingsFile = (File)settingsFiles.toArray()[0];
-        settingsFileFound = true;
+        settingsFile = (File)settingsFiles.toArray()[0];
         LOG.debug("- DotSettings file          : " + dotSettingsFilePath);
-        command.addArgument("/profile=" + settingsFile.getAbsolutePath());
       }
     }
 
-    if (!settingsFileFound) {
+    if (settingsFile == null && dotSettingsFile != null) {
+      settingsFile = dotSettingsFile;
+      LOG.debug("- DotSettings file          : " + dotSettingsFile);
+    }
+
+    if (settingsFile == null) {
       LOG.debug("- DotSettings file          : <not set> ");
     }
 
-    LOG.debug("- Report file               : " + resharperReportFile);
-    command.addArgument("/output=" + resharperReportFile.getAbsolutePath());
+    LOG.debug("- Report file               : " + reportFile);
+    LOG.debug("- MSBuild properties        : " + msBuildProperties);
+    LOG.debug("- Extensions                : " + extensions);
+    LOG.debug("- Solution-wide analysis    : " + !noSolutionWideAnalysis);
+
+    List<String> arguments = new ArrayList<String>();
+    for (String project : projects) {
+      arguments.add("/project=" + project);
+    }
+    if (settingsFile != null) {
+      arguments.add("/profile=" + settingsFile.getAbsolutePath());
+    }
+    arguments.add("/output=" + reportFile.getAbsolutePath());
+    if (noSolutionWideAnalysis) {
+      arguments.add("/no-swea");
+    }
+    if (!msBuildProperties.isEmpty()) {
+      arguments.add("/properties=" + StringUtils.join(propertyAssignments(), ';'));
+    }
+    if (!extensions.isEmpty()) {
+      arguments.add("/x=" + StringUtils.join(extensions, ';'));
+    }
+    arguments.add(solution.getSolutionFile().getAbsolutePath());
+
+    configFileUsed = useConfigFile || commandLineLength(arguments) > MAX_COMMAND_LINE_LENGTH;
+    if (configFileUsed) {
+      File configFile = configFileOf(reportFile);
+      LOG.debug("- Config file               : " + configFile);
+      writeConfigFile(configFile, projects, reportFile);
+      command.addArgument("/config=" + configFile.getAbsolutePath());
+    } else {
+      command.addArguments(arguments.subList(0, arguments.size() - 1));
+    }
 
     if (StringUtils.isEmpty(cmdArgs))
     {
@@ -173,9 +523,72 @@ public final class ReSharperCommandBuilder {
     }
 
     LOG.debug("- Solution file              : " + solution);
-    command.addArgument(solution.getSolutionFile().getAbsolutePath());
+    if (!configFileUsed) {
+      command.addArgument(solution.getSolutionFile().getAbsolutePath());
+    }
 
     return command;
   }
 
+  private List<String> propertyAssignments() {
+    List<String> properties = new ArrayList<String>();
+    for (Map.Entry<String, String> property : msBuildProperties.entrySet()) {
+      properties.add(property.getKey() + "=" + property.getValue());
+    }
+    return properties;
+  }
+
+  private int commandLineLength(List<String> arguments) {
+    int length = executable.getAbsolutePath().length() + StringUtils.length(cmdArgs);
+    for (String argument : arguments) {
+      // quotes and separating space
+      length += argument.length() + 3;
+    }
+    return length;
+  }
+
+  /**
+   * Writes the inspectcode parameters file, with the same layout as the one produced by inspectcode /config-create.
+   */
+  private void writeConfigFile(File configFile, Collection<String> projects, File reportFile) throws ReSharperException {
+    Writer writer = null;
+    try {
+      writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(configFile), "UTF-8"));
+      writer.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+      writer.append("<InspectCodeOptions xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n");
+      writeElement(writer, "SolutionFile", solution.getSolutionFile().getAbsolutePath());
+      writeElement(writer, "OutputFile", reportFile.getAbsolutePath());
+      if (settingsFile != null) {
+        writeElement(writer, "CustomSettingsProfile", settingsFile.getAbsolutePath());
+      }
+      writeElement(writer, "NoSolutionWideAnalysis", noSolutionWideAnalysis ? "True" : "False");
+      writeList(writer, "ProjectWildcards", projects);
+      writeList(writer, "MsBuildProperties", propertyAssignments());
+      writeList(writer, "Extensions", extensions);
+      writer.append("</InspectCodeOptions>\n");
+    } catch (IOException e) {
+      throw new ReSharperException("Unable to write the ReSharper config file " + configFile + ": " + e.getMessage());
+    } finally {
+      IOUtils.closeQuietly(writer);
+    }
+  }
+
+  private static void writeElement(Writer writer, String name, String value) throws IOException {
+    writer.append("  <").append(name).append(">");
+    StringEscapeUtils.escapeXml(writer, value);
+    writer.append("</").append(name).append(">\n");
+  }
+
+  private static void writeList(Writer writer, String name, Collection<String> values) throws IOException {
+    if (values.isEmpty()) {
+      return;
+    }
+    writer.append("  <").append(name).append(">\n");
+    for (String value : values) {
+      writer.append("  ");
+      writeElement(writer, "string", value);
+    }
+    writer.append("  </").append(name).append(">\n");
+  }
+
 }
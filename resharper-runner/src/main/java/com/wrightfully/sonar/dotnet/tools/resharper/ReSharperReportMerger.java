@@ -0,0 +1,428 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges the partial reports generated by several inspectcode executions, e.g. one per shard of a solution or the report
+ * of the changed projects and the previous one, into a single report. The IssueTypes of all the reports are united, and the issues are streamed project by project: all the reports
+ * are read side by side, and the blocks of the same project are written together, without the identical issues. Only the
+ * IssueTypes and the hashes of the issues of the current project are kept in memory. As inspectcode writes the projects
+ * in the order of their names, each project usually ends up in a single block.
+ *
+ * <pre>
+ * ReSharperReportMerger &lt;merged report&gt; &lt;report&gt;...
+ * </pre>
+ */
+public final class ReSharperReportMerger {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReSharperReportMerger.class);
+
+  private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+  private int issueCount;
+  private int duplicateCount;
+
+  private static XMLInputFactory createInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    return factory;
+  }
+
+  public static void main(String[] args) throws ReSharperException {
+    if (args.length < 2) {
+      throw new IllegalArgumentException("Usage: ReSharperReportMerger <merged report> <report>...");
+    }
+    List<File> reports = new ArrayList<File>();
+    for (int i = 1; i < args.length; i++) {
+      reports.add(new File(args[i]));
+    }
+    new ReSharperReportMerger().merge(reports, new File(args[0]));
+  }
+
+  /**
+   * @return the number of issues written by the last merge
+   */
+  public int getIssueCount() {
+    return issueCount;
+  }
+
+  /**
+   * @return the number of identical issues dropped by the last merge
+   */
+  public int getDuplicateCount() {
+    return duplicateCount;
+  }
+
+  /**
+   * Merges reports.
+   *
+   * @param reports
+   *          the reports to merge, the Information block of the first one is kept
+   * @param mergedReport
+   *          the destination file
+   * @throws ReSharperException
+   *           if a report cannot be read or the merged report cannot be written
+   */
+  public void merge(List<File> reports, File mergedReport) throws ReSharperException {
+    merge(reports, Collections.<String>emptySet(), mergedReport);
+  }
+
+  /**
+   * Merges the report of the projects inspected again with the previous report of a larger scope. The blocks of these
+   * projects in the previous report are dropped, even when the new report has no issue on them.
+   *
+   * @param report
+   *          the report of the projects inspected again, its Information block is kept
+   * @param inspectedProjects
+   *          the names of the projects inspected again
+   * @param previousReport
+   *          the previous report
+   * @param mergedReport
+   *          the destination file
+   * @throws ReSharperException
+   *           if a report cannot be read or the merged report cannot be written
+   */
+  public void mergeOver(File report, Set<String> inspectedProjects, File previousReport, File mergedReport) throws ReSharperException {
+    merge(Arrays.asList(report, previousReport), inspectedProjects, mergedReport);
+  }
+
+  /**
+   * @param replacedProjects
+   *          the names of the projects whose blocks are only read from the first report
+   */
+  private void merge(List<File> reports, Set<String> replacedProjects, File mergedReport) throws ReSharperException {
+    issueCount = 0;
+    duplicateCount = 0;
+    List<ReportCursor> cursors = new ArrayList<ReportCursor>();
+    OutputStream out = null;
+    try {
+      out = new BufferedOutputStream(new FileOutputStream(mergedReport));
+      XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+      writer.writeStartDocument("UTF-8", "1.0");
+      writer.writeCharacters("\n");
+
+      Map<String, String[]> issueTypes = new LinkedHashMap<String, String[]>();
+      for (File report : reports) {
+        ReportCursor cursor = new ReportCursor(report, cursors.isEmpty() ? Collections.<String>emptySet() : replacedProjects);
+        cursors.add(cursor);
+        cursor.readHeader(cursors.size() == 1 ? writer : null, issueTypes);
+      }
+      if (cursors.isEmpty()) {
+        writer.writeStartElement("Report");
+      }
+
+      indent(writer, 1);
+      writer.writeStartElement("IssueTypes");
+      for (String[] attributes : issueTypes.values()) {
+        indent(writer, 2);
+        writeEmptyElement(writer, "IssueType", attributes);
+      }
+      indent(writer, 1);
+      writer.writeEndElement();
+
+      indent(writer, 1);
+      writer.writeStartElement("Issues");
+      writeProjects(writer, cursors);
+      indent(writer, 1);
+      writer.writeEndElement();
+
+      writer.writeCharacters("\n");
+      writer.writeEndElement();
+      writer.writeEndDocument();
+      writer.close();
+    } catch (XMLStreamException e) {
+      throw new ReSharperException("Unable to merge the ReSharper reports " + reports + ": " + e.getMessage());
+    } catch (IOException e) {
+      throw new ReSharperException("Unable to merge the ReSharper reports " + reports + ": " + e.getMessage());
+    } finally {
+      for (ReportCursor cursor : cursors) {
+        cursor.close();
+      }
+      IOUtils.closeQuietly(out);
+    }
+    LOG.info("Merged " + reports.size() + " ReSharper reports into " + mergedReport + ": " + issueCount + " issues, " + duplicateCount + " duplicates dropped");
+  }
+
+  /**
+   * Writes the blocks of the projects in the order of their names, each one gathering the blocks of all the reports.
+   */
+  private void writeProjects(XMLStreamWriter writer, List<ReportCursor> cursors) throws XMLStreamException {
+    Set<Long> projectIssues = new HashSet<Long>();
+    while (true) {
+      String projectName = null;
+      for (ReportCursor cursor : cursors) {
+        if (cursor.projectName != null && (projectName == null || cursor.projectName.compareTo(projectName) < 0)) {
+          projectName = cursor.projectName;
+        }
+      }
+      if (projectName == null) {
+        return;
+      }
+
+      indent(writer, 2);
+      writer.writeStartElement("Project");
+      writer.writeAttribute("Name", projectName);
+      projectIssues.clear();
+      for (ReportCursor cursor : cursors) {
+        if (projectName.equals(cursor.projectName)) {
+          cursor.copyIssues(writer, projectIssues);
+        }
+      }
+      indent(writer, 2);
+      writer.writeEndElement();
+    }
+  }
+
+  private static void indent(XMLStreamWriter writer, int depth) throws XMLStreamException {
+    char[] indentation = new char[1 + depth * 2];
+    Arrays.fill(indentation, ' ');
+    indentation[0] = '\n';
+    writer.writeCharacters(indentation, 0, indentation.length);
+  }
+
+  private static void writeEmptyElement(XMLStreamWriter writer, String name, String[] attributes) throws XMLStreamException {
+    writer.writeEmptyElement(name);
+    for (int i = 0; i < attributes.length; i += 2) {
+      writer.writeAttribute(attributes[i], attributes[i + 1]);
+    }
+  }
+
+  /**
+   * @return the names and values of the attributes of the current element
+   */
+  private static String[] readAttributes(XMLStreamReader reader) {
+    String[] attributes = new String[reader.getAttributeCount() * 2];
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      attributes[i * 2] = reader.getAttributeLocalName(i);
+      attributes[i * 2 + 1] = reader.getAttributeValue(i);
+    }
+    return attributes;
+  }
+
+  /**
+   * 64-bit FNV-1a hash of the attributes of an issue.
+   */
+  private static long hash(String[] attributes) {
+    long hash = Fnv1aHash.OFFSET_BASIS;
+    for (String value : attributes) {
+      hash = Fnv1aHash.hash(hash, value);
+    }
+    return hash;
+  }
+
+  /**
+   * Moves to the next start element of the current element.
+   *
+   * @return false once the end of the current element is reached
+   */
+  private static boolean nextElement(XMLStreamReader reader) throws XMLStreamException {
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamReader.START_ELEMENT) {
+        return true;
+      } else if (event == XMLStreamReader.END_ELEMENT) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Moves from a start element to its end element.
+   */
+  private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamReader.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamReader.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  /**
+   * Copies an element with its content, from its start element to its end element.
+   */
+  private static void copyElement(XMLStreamReader reader, XMLStreamWriter writer) throws XMLStreamException {
+    int depth = 0;
+    do {
+      switch (reader.getEventType()) {
+        case XMLStreamReader.START_ELEMENT:
+          writer.writeStartElement(reader.getLocalName());
+          for (int i = 0; i < reader.getAttributeCount(); i++) {
+            writer.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+          }
+          depth++;
+          break;
+        case XMLStreamReader.END_ELEMENT:
+          writer.writeEndElement();
+          depth--;
+          break;
+        case XMLStreamReader.CHARACTERS:
+        case XMLStreamReader.SPACE:
+          writer.writeCharacters(reader.getText());
+          break;
+        default:
+          break;
+      }
+      if (depth > 0) {
+        reader.next();
+      }
+    } while (depth > 0);
+  }
+
+  /**
+   * A report being read, positioned on the block of its next project once its header is read.
+   */
+  private final class ReportCursor {
+
+    private final File report;
+    private final InputStream in;
+    private final XMLStreamReader reader;
+    private final Set<String> skippedProjects;
+    private String projectName;
+
+    ReportCursor(File report, Set<String> skippedProjects) throws IOException, XMLStreamException {
+      this.report = report;
+      this.skippedProjects = skippedProjects;
+      this.in = new BufferedInputStream(new FileInputStream(report));
+      this.reader = INPUT_FACTORY.createXMLStreamReader(in);
+    }
+
+    /**
+     * Reads the report up to the block of its first project.
+     *
+     * @param writer
+     *          the writer to copy the root element and the Information block to, null to skip them
+     * @param issueTypes
+     *          the IssueTypes by id, completed with the ones of this report
+     */
+    void readHeader(XMLStreamWriter writer, Map<String, String[]> issueTypes) throws XMLStreamException {
+      reader.nextTag();
+      if (writer != null) {
+        writer.writeStartElement(reader.getLocalName());
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+          writer.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+      }
+      while (nextElement(reader)) {
+        String name = reader.getLocalName();
+        if ("Information".equals(name) && writer != null) {
+          indent(writer, 1);
+          copyElement(reader, writer);
+        } else if ("IssueTypes".equals(name)) {
+          readIssueTypes(issueTypes);
+        } else if ("Issues".equals(name)) {
+          nextProject();
+          return;
+        } else {
+          skipElement(reader);
+        }
+      }
+      LOG.debug("No issues in the ReSharper report " + report);
+    }
+
+    private void readIssueTypes(Map<String, String[]> issueTypes) throws XMLStreamException {
+      while (nextElement(reader)) {
+        if ("IssueType".equals(reader.getLocalName())) {
+          String id = reader.getAttributeValue(null, "Id");
+          if (!issueTypes.containsKey(id)) {
+            issueTypes.put(id, readAttributes(reader));
+          }
+        }
+        skipElement(reader);
+      }
+    }
+
+    private void nextProject() throws XMLStreamException {
+      projectName = null;
+      while (nextElement(reader)) {
+        if ("Project".equals(reader.getLocalName())) {
+          String name = reader.getAttributeValue(null, "Name");
+          if (!skippedProjects.contains(name)) {
+            projectName = name;
+            return;
+          }
+        }
+        skipElement(reader);
+      }
+    }
+
+    /**
+     * Copies the issues of the current project block that are not written yet, and moves to the next project block.
+     */
+    void copyIssues(XMLStreamWriter writer, Set<Long> writtenIssues) throws XMLStreamException {
+      while (nextElement(reader)) {
+        if ("Issue".equals(reader.getLocalName())) {
+          String[] attributes = readAttributes(reader);
+          if (writtenIssues.add(hash(attributes))) {
+            indent(writer, 3);
+            writeEmptyElement(writer, "Issue", attributes);
+            issueCount++;
+          } else {
+            duplicateCount++;
+          }
+        }
+        skipElement(reader);
+      }
+      nextProject();
+    }
+
+    void close() {
+      try {
+        reader.close();
+      } catch (XMLStreamException e) {
+        LOG.debug("Unable to close " + report + ": " + e.getMessage());
+      }
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Properties;
+
+/**
+ * Wall time, exit code and resources consumed by one ReSharper inspectcode execution.
+ */
+public final class ReSharperRunStatistics {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReSharperRunStatistics.class);
+
+  public static final String STATISTICS_FILE_SUFFIX = ".stats.properties";
+  public static final String HISTORY_FILENAME = "resharper-run-history.csv";
+
+  private static final String HISTORY_HEADER = "timestamp,project,exitCode,wallTimeMs,cpuTimeMs,peakRssKb,readBytes,writtenBytes";
+
+  private final String projectName;
+  private final long startTimestamp;
+  private final long wallTimeMillis;
+  private final int exitCode;
+  private final ProcessResourceUsage usage;
+
+  public ReSharperRunStatistics(String projectName, long startTimestamp, long wallTimeMillis, int exitCode, ProcessResourceUsage usage) {
+    this.projectName = projectName;
+    this.startTimestamp = startTimestamp;
+    this.wallTimeMillis = wallTimeMillis;
+    this.exitCode = exitCode;
+    this.usage = usage;
+  }
+
+  public String getProjectName() {
+    return projectName;
+  }
+
+  public long getStartTimestamp() {
+    return startTimestamp;
+  }
+
+  public long getWallTimeMillis() {
+    return wallTimeMillis;
+  }
+
+  public int getExitCode() {
+    return exitCode;
+  }
+
+  public ProcessResourceUsage getUsage() {
+    return usage;
+  }
+
+  /**
+   * Writes these statistics next to the given report file, and appends them to the history file of the report directory.
+   * Failures are logged: accounting must never break the analysis.
+   *
+   * @param reportFile
+   *          the report generated by inspectcode
+   */
+  public void record(File reportFile) {
+    try {
+      writeTo(new File(reportFile.getPath() + STATISTICS_FILE_SUFFIX));
+      appendTo(new File(reportFile.getAbsoluteFile().getParentFile(), HISTORY_FILENAME));
+    } catch (IOException e) {
+      LOG.warn("Unable to record the ReSharper execution statistics: " + e.getMessage());
+    }
+  }
+
+  void writeTo(File statisticsFile) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("project", String.valueOf(projectName));
+    properties.setProperty("timestamp", String.valueOf(startTimestamp));
+    properties.setProperty("exitCode", String.valueOf(exitCode));
+    properties.setProperty("wallTimeMs", String.valueOf(wallTimeMillis));
+    properties.setProperty("cpuTimeMs", String.valueOf(usage.getCpuTimeMillis()));
+    properties.setProperty("peakRssKb", String.valueOf(usage.getPeakResidentKilobytes()));
+    properties.setProperty("readBytes", String.valueOf(usage.getReadBytes()));
+    properties.setProperty("writtenBytes", String.valueOf(usage.getWrittenBytes()));
+
+    OutputStream out = null;
+    try {
+      out = new FileOutputStream(statisticsFile);
+      properties.store(out, "ReSharper inspectcode execution");
+    } finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  void appendTo(File historyFile) throws IOException {
+    boolean newFile = !historyFile.exists();
+    Writer writer = null;
+    try {
+      writer = new OutputStreamWriter(new FileOutputStream(historyFile, true), "UTF-8");
+      if (newFile) {
+        writer.write(HISTORY_HEADER + "\n");
+      }
+      writer.write(startTimestamp + "," + csvField(projectName) + "," + exitCode + "," + wallTimeMillis + ","
+        + usage.getCpuTimeMillis() + "," + usage.getPeakResidentKilobytes() + "," + usage.getReadBytes() + "," + usage.getWrittenBytes() + "\n");
+    } finally {
+      IOUtils.closeQuietly(writer);
+    }
+  }
+
+  /**
+   * Quotes a field containing a comma, a quote or a line break, as spreadsheets expect it.
+   */
+  private static String csvField(String value) {
+    if (value == null || StringUtils.containsNone(value, ",\"\r\n")) {
+      return value;
+    }
+    return "\"" + StringUtils.replace(value, "\"", "\"\"") + "\"";
+  }
+
+  @Override
+  public String toString() {
+    return "project=" + projectName + ", exitCode=" + exitCode + ", wallTime=" + wallTimeMillis + "ms, " + usage;
+  }
+
+}
@@ -19,13 +19,22 @@
  */
 package com.wrightfully.sonar.dotnet.tools.resharper;
 
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.utils.command.Command;
 import org.sonar.api.utils.command.CommandExecutor;
 import org.sonar.plugins.dotnet.api.microsoft.VisualStudioProject;
 import org.sonar.plugins.dotnet.api.microsoft.VisualStudioSolution;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class that runs the ReSharper inspectcode program.
@@ -38,8 +47,17 @@ public final class ReSharperRunner {
 
   private static final long MINUTES_TO_MILLISECONDS = 60000;
 
+  private static final long SAMPLING_PERIOD_MILLISECONDS = 1000;
+
+  /**
+   * The first sample is taken shortly after the launch, so that the short executions are measured too.
+   */
+  private static final long SAMPLING_DELAY_MILLISECONDS = 100;
+
   private File resharperExecutable;
 
+  private ProcessResourceSampler resourceSampler;
+
   private ReSharperRunner() {
   }
 
@@ -52,9 +70,23 @@ public final class ReSharperRunner {
   public static ReSharperRunner create(String resharperPath) throws ReSharperException {
     ReSharperRunner runner = new ReSharperRunner();
     runner.resharperExecutable = new File(resharperPath, RESHARPER_EXECUTABLE);
+    if (ProcFileSystemSampler.isSupported()) {
+      runner.resourceSampler = new ProcFileSystemSampler();
+    }
     return runner;
   }
 
+  /**
+   * Sets the sampler used to account for the resources consumed by inspectcode. By default, the /proc file system is
+   * sampled when available, and nothing is measured otherwise.
+   *
+   * @param resourceSampler
+   *          the sampler, or null to disable the sampling
+   */
+  public void setResourceSampler(ProcessResourceSampler resourceSampler) {
+    this.resourceSampler = resourceSampler;
+  }
+
   /**
    * Creates a pre-configured {@link ReSharperCommandBuilder} that needs to be completed before running the
    * {@link #execute(ReSharperCommandBuilder, int)} method.
@@ -81,11 +113,150 @@ public final class ReSharperRunner {
    */
   public void execute(ReSharperCommandBuilder resharperCommandBuilder, int timeoutMinutes) throws ReSharperException {
     LOG.debug("Executing ReSharper program...");
-    int exitCode = CommandExecutor.create().execute(resharperCommandBuilder.toCommand(), timeoutMinutes * MINUTES_TO_MILLISECONDS);
+    Command command = resharperCommandBuilder.toCommand();
+
+    FileHashManifest manifest = null;
+    if (resharperCommandBuilder.isChangedFilesOnly()) {
+      manifest = computeManifest(resharperCommandBuilder, command);
+      Set<String> projectsToInspect = manifest == null ? null : findProjectsToInspect(resharperCommandBuilder, manifest);
+      if (projectsToInspect != null) {
+        inspectChangedProjects(resharperCommandBuilder, projectsToInspect, timeoutMinutes);
+        saveBaseline(resharperCommandBuilder, manifest);
+        return;
+      }
+    }
+
+    run(resharperCommandBuilder, command, timeoutMinutes);
+    if (manifest != null) {
+      saveBaseline(resharperCommandBuilder, manifest);
+    }
+  }
+
+  private void run(ReSharperCommandBuilder resharperCommandBuilder, Command command, int timeoutMinutes) throws ReSharperException {
+    long startTimestamp = System.currentTimeMillis();
+    ScheduledExecutorService sampling = startSampling();
+    ProcessResourceUsage usage = ProcessResourceUsage.NOT_MEASURED;
+    int exitCode;
+    try {
+      exitCode = CommandExecutor.create().execute(command, timeoutMinutes * MINUTES_TO_MILLISECONDS);
+    } finally {
+      if (sampling != null) {
+        usage = stopSampling(sampling);
+      }
+    }
+
+    ReSharperRunStatistics statistics = new ReSharperRunStatistics(resharperCommandBuilder.getProjectName(), startTimestamp,
+      System.currentTimeMillis() - startTimestamp, exitCode, usage);
+    LOG.info("ReSharper execution statistics: " + statistics);
+    statistics.record(resharperCommandBuilder.getReportFile());
+
     if (exitCode != 0 ) {
       throw new ReSharperException("ReSharper execution failed with return code '" + exitCode
         + "'. Check ReSharper documentation for more information.");
     }
   }
 
+  private FileHashManifest computeManifest(ReSharperCommandBuilder resharperCommandBuilder, Command command) {
+    try {
+      return resharperCommandBuilder.computeInspectionManifest(command);
+    } catch (IOException e) {
+      LOG.warn("Unable to compute the list of changed files, the whole project will be inspected: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * @return the projects to inspect again, none if nothing changed, or null if the whole scope has to be inspected
+   */
+  private Set<String> findProjectsToInspect(ReSharperCommandBuilder resharperCommandBuilder, FileHashManifest manifest) {
+    if (!resharperCommandBuilder.getBaselineReportFile().isFile()) {
+      LOG.info("No previous ReSharper inspection found, the whole project will be inspected.");
+      return null;
+    }
+    Set<String> changedFiles;
+    try {
+      changedFiles = manifest.changedSince(FileHashManifest.load(resharperCommandBuilder.getBaselineManifestFile()));
+    } catch (IOException e) {
+      LOG.warn("Unable to read the previous ReSharper inspection, the whole project will be inspected: " + e.getMessage());
+      return null;
+    }
+    if (changedFiles.isEmpty()) {
+      return Collections.emptySet();
+    }
+    LOG.debug("Changed files: {}", changedFiles);
+    Set<String> projectsToInspect = resharperCommandBuilder.findProjectsToInspect(changedFiles);
+    if (projectsToInspect == null) {
+      LOG.info(changedFiles.size() + " file(s) changed since the previous ReSharper inspection, the project will be inspected.");
+    }
+    return projectsToInspect;
+  }
+
+  /**
+   * Inspects the given projects only, and merges their issues with the ones of the other projects in the previous report.
+   */
+  private void inspectChangedProjects(ReSharperCommandBuilder resharperCommandBuilder, Set<String> projectsToInspect, int timeoutMinutes)
+    throws ReSharperException {
+    File baselineReport = resharperCommandBuilder.getBaselineReportFile();
+    if (projectsToInspect.isEmpty()) {
+      LOG.info("No file changed since the previous ReSharper inspection, reusing its report: " + baselineReport);
+      try {
+        FileUtils.copyFile(baselineReport, resharperCommandBuilder.getReportFile());
+      } catch (IOException e) {
+        throw new ReSharperException("Unable to reuse the previous ReSharper report " + baselineReport + ": " + e.getMessage());
+      }
+      return;
+    }
+
+    LOG.info("Inspecting the projects changed since the previous ReSharper inspection: " + projectsToInspect);
+    File partialReport = resharperCommandBuilder.getPartialReportFile();
+    run(resharperCommandBuilder, resharperCommandBuilder.toCommand(projectsToInspect, partialReport), timeoutMinutes);
+    new ReSharperReportMerger().mergeOver(partialReport, projectsToInspect, baselineReport, resharperCommandBuilder.getReportFile());
+  }
+
+  private void saveBaseline(ReSharperCommandBuilder resharperCommandBuilder, FileHashManifest manifest) {
+    try {
+      FileUtils.copyFile(resharperCommandBuilder.getReportFile(), resharperCommandBuilder.getBaselineReportFile());
+      manifest.save(resharperCommandBuilder.getBaselineManifestFile());
+    } catch (IOException e) {
+      LOG.warn("Unable to save the ReSharper inspection baseline: " + e.getMessage());
+    }
+  }
+
+  private ScheduledExecutorService startSampling() {
+    if (resourceSampler == null) {
+      return null;
+    }
+    resourceSampler.start();
+    ScheduledExecutorService sampling = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "ReSharper resource sampler");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    sampling.scheduleWithFixedDelay(new Runnable() {
+      public void run() {
+        resourceSampler.sample();
+      }
+    }, SAMPLING_DELAY_MILLISECONDS, SAMPLING_PERIOD_MILLISECONDS, TimeUnit.MILLISECONDS);
+    return sampling;
+  }
+
+  /**
+   * Waits for the sample in progress, if any, before taking the final one: samplers are not called concurrently.
+   */
+  private ProcessResourceUsage stopSampling(ScheduledExecutorService sampling) {
+    sampling.shutdown();
+    try {
+      if (!sampling.awaitTermination(SAMPLING_PERIOD_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+        LOG.warn("The ReSharper resource sampler did not stop, its measures are discarded.");
+        return ProcessResourceUsage.NOT_MEASURED;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return ProcessResourceUsage.NOT_MEASURED;
+    }
+    return resourceSampler.stop();
+  }
+
 }
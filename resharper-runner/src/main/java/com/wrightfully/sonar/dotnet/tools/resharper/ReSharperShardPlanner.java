@@ -0,0 +1,253 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.plugins.dotnet.api.microsoft.SourceFile;
+import org.sonar.plugins.dotnet.api.microsoft.VisualStudioProject;
+import org.sonar.plugins.dotnet.api.microsoft.VisualStudioSolution;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the inspection of a solution into shards of similar durations, to be run by several agents. The duration of a
+ * project is taken from the run history written by {@link ReSharperRunStatistics} when present, and estimated from the
+ * size of its source files otherwise. Projects are assigned, longest first, to the shard that is the least loaded so far.
+ * Each shard is run through a {@link ReSharperCommandBuilder} selecting its projects and writing its own report; the
+ * reports can then be merged with {@link ReSharperReportMerger}.
+ */
+public final class ReSharperShardPlanner {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReSharperShardPlanner.class);
+
+  public static final String SHARD_REPORT_PREFIX = "resharper-report-shard-";
+
+  private final VisualStudioSolution solution;
+  private final Map<String, Long> sizesByProject = new LinkedHashMap<String, Long>();
+  private final Map<String, Long> durationsByProject = new HashMap<String, Long>();
+
+  /**
+   * A set of projects to inspect together.
+   */
+  public static final class Shard {
+
+    private final int index;
+    private final List<String> projects = new ArrayList<String>();
+    private long estimatedCost;
+
+    Shard(int index) {
+      this.index = index;
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    /**
+     * @return the names of the projects of the shard, passed as /project wildcards
+     */
+    public List<String> getProjects() {
+      return Collections.unmodifiableList(projects);
+    }
+
+    /**
+     * @return the estimated duration of the shard, in milliseconds when a run history is available, in bytes of source
+     *         code otherwise
+     */
+    public long getEstimatedCost() {
+      return estimatedCost;
+    }
+
+    public String getReportFileName() {
+      return SHARD_REPORT_PREFIX + index + ".xml";
+    }
+
+    @Override
+    public String toString() {
+      return "shard " + index + " " + projects + " (cost " + estimatedCost + ")";
+    }
+  }
+
+  /**
+   * Creates a planner for the projects of the given solution.
+   *
+   * @param solution
+   *          the solution to inspect
+   */
+  public ReSharperShardPlanner(VisualStudioSolution solution) {
+    this.solution = solution;
+    for (VisualStudioProject project : solution.getProjects()) {
+      long size = 0;
+      for (SourceFile sourceFile : project.getSourceFiles()) {
+        size += sourceFile.getFile().length();
+      }
+      sizesByProject.put(project.getName(), size);
+    }
+  }
+
+  /**
+   * Reads the durations of the previous inspections. The last successful inspection of each project counts; the duration of
+   * an inspection of several projects is shared out among them in proportion to their sizes.
+   *
+   * @param historyFile
+   *          a {@link ReSharperRunStatistics#HISTORY_FILENAME} file
+   */
+  public void loadHistory(File historyFile) {
+    if (!historyFile.isFile()) {
+      return;
+    }
+    List<String> lines;
+    try {
+      lines = FileUtils.readLines(historyFile, "UTF-8");
+    } catch (IOException e) {
+      LOG.warn("Unable to read the ReSharper run history " + historyFile + ": " + e.getMessage());
+      return;
+    }
+    for (String line : lines) {
+      // timestamp,project,exitCode,wallTimeMs,...
+      String[] fields = StringUtils.splitPreserveAllTokens(line, ',');
+      if (fields.length < 4 || !"0".equals(fields[2]) || !StringUtils.isNumeric(fields[3]) || fields[3].length() == 0) {
+        continue;
+      }
+      String[] projects = StringUtils.split(fields[1], ';');
+      long wallTime = Long.parseLong(fields[3]);
+      long totalSize = 0;
+      for (String project : projects) {
+        totalSize += getSize(project);
+      }
+      for (String project : projects) {
+        if (sizesByProject.containsKey(project)) {
+          long share = totalSize == 0 ? wallTime / projects.length : wallTime * getSize(project) / totalSize;
+          durationsByProject.put(project, share);
+        }
+      }
+    }
+  }
+
+  private long getSize(String project) {
+    Long size = sizesByProject.get(project);
+    return size == null ? 0 : size;
+  }
+
+  /**
+   * Plans the shards.
+   *
+   * @param shardCount
+   *          the number of agents
+   * @return the shards, fewer than requested when the solution has fewer projects
+   */
+  public List<Shard> plan(int shardCount) {
+    final Map<String, Long> costs = estimateCosts();
+    List<String> projects = new ArrayList<String>(costs.keySet());
+    Collections.sort(projects, new Comparator<String>() {
+      public int compare(String left, String right) {
+        int result = costs.get(right).compareTo(costs.get(left));
+        return result != 0 ? result : left.compareTo(right);
+      }
+    });
+
+    List<Shard> shards = new ArrayList<Shard>();
+    for (int i = 0; i < Math.min(shardCount, projects.size()); i++) {
+      shards.add(new Shard(i + 1));
+    }
+    for (String project : projects) {
+      Shard leastLoaded = shards.get(0);
+      for (Shard shard : shards) {
+        if (shard.estimatedCost < leastLoaded.estimatedCost) {
+          leastLoaded = shard;
+        }
+      }
+      leastLoaded.projects.add(project);
+      leastLoaded.estimatedCost += costs.get(project);
+    }
+    for (Shard shard : shards) {
+      LOG.info("ReSharper inspection " + shard);
+    }
+    return shards;
+  }
+
+  /**
+   * Estimates the duration of each project. When some projects have a known duration, the others are converted from their
+   * size with the average speed of the known ones, so that all the costs are in milliseconds.
+   */
+  private Map<String, Long> estimateCosts() {
+    long knownDuration = 0;
+    long knownSize = 0;
+    for (Map.Entry<String, Long> duration : durationsByProject.entrySet()) {
+      knownDuration += duration.getValue();
+      knownSize += getSize(duration.getKey());
+    }
+    double millisecondsPerByte = knownSize == 0 ? 0 : (double) knownDuration / knownSize;
+
+    Map<String, Long> costs = new LinkedHashMap<String, Long>();
+    for (Map.Entry<String, Long> size : sizesByProject.entrySet()) {
+      Long duration = durationsByProject.get(size.getKey());
+      long cost;
+      if (duration != null) {
+        cost = duration;
+      } else if (millisecondsPerByte > 0) {
+        cost = Math.round(size.getValue() * millisecondsPerByte);
+      } else {
+        cost = size.getValue();
+      }
+      // projects without sources still take some time to load
+      costs.put(size.getKey(), Math.max(cost, 1));
+    }
+    return costs;
+  }
+
+  /**
+   * Creates the command builders of the shards, to be completed (dotSettings, additional parameters...) and run.
+   *
+   * @param shards
+   *          the shards returned by {@link #plan(int)}
+   * @param runner
+   *          the runner of the agents
+   * @param reportDir
+   *          the directory of the shard reports and of their inspectcode /config files
+   * @return the builders, in the order of the shards
+   */
+  public List<ReSharperCommandBuilder> createCommandBuilders(List<Shard> shards, ReSharperRunner runner, File reportDir) {
+    List<ReSharperCommandBuilder> builders = new ArrayList<ReSharperCommandBuilder>();
+    for (Shard shard : shards) {
+      ReSharperCommandBuilder builder = runner.createCommandBuilder(solution, null);
+      for (String project : shard.projects) {
+        builder.addProjectWildcard(project);
+      }
+      builder.setReportFile(new File(reportDir, shard.getReportFileName()));
+      // the /config file is the manifest of the shard, ready to be run by another agent
+      builder.setUseConfigFile(true);
+      builders.add(builder);
+    }
+    return builders;
+  }
+
+}
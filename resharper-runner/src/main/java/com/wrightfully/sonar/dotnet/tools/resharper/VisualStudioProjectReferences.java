@@ -0,0 +1,128 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.codehaus.staxmate.SMInputFactory;
+import org.codehaus.staxmate.in.SMHierarchicCursor;
+import org.codehaus.staxmate.in.SMInputCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.plugins.dotnet.api.microsoft.VisualStudioProject;
+import org.sonar.plugins.dotnet.api.microsoft.VisualStudioSolution;
+import org.sonar.plugins.dotnet.api.utils.StaxParserUtils;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the ProjectReference items of the projects of a Visual Studio solution: what inspectcode reads besides the files of
+ * the inspected projects themselves.
+ */
+public final class VisualStudioProjectReferences {
+
+  private static final Logger LOG = LoggerFactory.getLogger(VisualStudioProjectReferences.class);
+
+  private VisualStudioProjectReferences() {
+  }
+
+  /**
+   * @return the given projects and the projects of the solution they reference, directly or not, each one with the projects
+   *         it references directly
+   * @throws IOException
+   *           if a project file cannot be read
+   */
+  public static Map<VisualStudioProject, List<VisualStudioProject>> read(VisualStudioSolution solution,
+    Collection<VisualStudioProject> projects) throws IOException {
+    Map<File, VisualStudioProject> projectsByFile = new HashMap<File, VisualStudioProject>();
+    for (VisualStudioProject project : solution.getProjects()) {
+      if (project.getProjectFile() != null) {
+        projectsByFile.put(project.getProjectFile().getCanonicalFile(), project);
+      }
+    }
+
+    Map<VisualStudioProject, List<VisualStudioProject>> result = new LinkedHashMap<VisualStudioProject, List<VisualStudioProject>>();
+    List<VisualStudioProject> pending = new ArrayList<VisualStudioProject>(projects);
+    while (!pending.isEmpty()) {
+      VisualStudioProject project = pending.remove(pending.size() - 1);
+      if (result.containsKey(project)) {
+        continue;
+      }
+      List<VisualStudioProject> references = new ArrayList<VisualStudioProject>();
+      result.put(project, references);
+      if (project.getProjectFile() == null) {
+        continue;
+      }
+      for (File referencedFile : readReferencedProjectFiles(project.getProjectFile())) {
+        VisualStudioProject referencedProject = projectsByFile.get(referencedFile);
+        if (referencedProject == null) {
+          LOG.debug("Project {} referenced by {} is not part of the solution", referencedFile, project.getName());
+        } else {
+          references.add(referencedProject);
+          pending.add(referencedProject);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the canonical files of the ProjectReference items of a project file
+   */
+  private static List<File> readReferencedProjectFiles(File projectFile) throws IOException {
+    List<File> references = new ArrayList<File>();
+    SMInputFactory inputFactory = StaxParserUtils.initStax();
+    InputStream in = null;
+    try {
+      in = new FileInputStream(projectFile);
+      SMHierarchicCursor cursor = inputFactory.rootElementCursor(in);
+      SMInputCursor itemGroupCursor = cursor.advance().childElementCursor("ItemGroup");
+      while (itemGroupCursor.getNext() != null) {
+        SMInputCursor referenceCursor = itemGroupCursor.childElementCursor("ProjectReference");
+        while (referenceCursor.getNext() != null) {
+          String include = referenceCursor.getAttrValue("Include");
+          if (StringUtils.isNotBlank(include)) {
+            references.add(new File(projectFile.getParentFile(), FilenameUtils.separatorsToSystem(include)).getCanonicalFile());
+          }
+        }
+      }
+      cursor.getStreamReader().closeCompletely();
+    } catch (XMLStreamException e) {
+      IOException exception = new IOException("Unable to read the project references of " + projectFile);
+      exception.initCause(e);
+      throw exception;
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+    return references;
+  }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.test.TestUtils;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FileHashManifestTest {
+
+  private File workDir;
+
+  @Before
+  public void init() throws Exception {
+    workDir = TestUtils.getTestTempDir(getClass(), "solution");
+  }
+
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    File program = new File(workDir, "Example.Application/Program.cs");
+    FileUtils.writeStringToFile(program, "class Program {}");
+    File outside = new File(TestUtils.getTestTempDir(getClass(), "outside"), "Outside.cs");
+    FileUtils.writeStringToFile(outside, "class Outside {}");
+    FileHashManifest manifest = FileHashManifest.compute(workDir, Arrays.asList(program, outside));
+    manifest.put("#command", "1f");
+    File manifestFile = new File(workDir, "manifest.properties");
+    manifest.save(manifestFile);
+
+    FileHashManifest loaded = FileHashManifest.load(manifestFile);
+    assertThat(loaded.get("Example.Application/Program.cs")).isEqualTo(FileHashManifest.hash(program));
+    assertThat(loaded.get(FileHashManifest.relativePath(workDir, outside))).isEqualTo(FileHashManifest.hash(outside));
+    assertThat(loaded.get("#command")).isEqualTo("1f");
+    assertThat(manifest.changedSince(loaded)).isEmpty();
+  }
+
+  @Test
+  public void testChangedSince() throws Exception {
+    File program = new File(workDir, "Program.cs");
+    File money = new File(workDir, "Money.cs");
+    File removed = new File(workDir, "Removed.cs");
+    FileUtils.writeStringToFile(program, "class Program {}");
+    FileUtils.writeStringToFile(money, "class Money {}");
+    FileUtils.writeStringToFile(removed, "class Removed {}");
+    FileHashManifest baseline = FileHashManifest.compute(workDir, Arrays.asList(program, money, removed));
+
+    FileUtils.writeStringToFile(money, "class Money { int amount; }");
+    File added = new File(workDir, "Added.cs");
+    FileUtils.writeStringToFile(added, "class Added {}");
+    FileHashManifest current = FileHashManifest.compute(workDir, Arrays.asList(program, money, added));
+
+    assertThat(current.changedSince(baseline)).containsOnly("Added.cs", "Money.cs", "Removed.cs");
+    assertThat(FileHashManifest.load(new File(workDir, "missing.properties")).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testTextsHashLikeFiles() throws Exception {
+    File program = new File(workDir, "Program.cs");
+    FileUtils.writeStringToFile(program, "class Program { string name = \"\u00e9\"; }", "UTF-8");
+
+    assertThat(FileHashManifest.hash("class Program { string name = \"\u00e9\"; }")).isEqualTo(FileHashManifest.hash(program));
+    assertThat(FileHashManifest.hash("class Program {}")).isNotEqualTo(FileHashManifest.hash(program));
+  }
+
+  @Test
+  public void testDigestChangesWithAnyEntry() throws Exception {
+    FileHashManifest manifest = new FileHashManifest();
+    manifest.put("Program.cs", "1");
+    manifest.put("Money.cs", "2");
+    String digest = manifest.digest();
+
+    FileHashManifest same = new FileHashManifest();
+    same.put("Money.cs", "2");
+    same.put("Program.cs", "1");
+    assertThat(same.digest()).isEqualTo(digest);
+
+    manifest.put("Money.cs", "3");
+    assertThat(manifest.digest()).isNotEqualTo(digest);
+    same.put("Added.cs", "4");
+    assertThat(same.digest()).isNotEqualTo(digest);
+  }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class Fnv1aHashTest {
+
+  @Test
+  public void testStringsAreSeparated() {
+    long ab = Fnv1aHash.hash(Fnv1aHash.hash(Fnv1aHash.OFFSET_BASIS, "ab"), "c");
+    long bc = Fnv1aHash.hash(Fnv1aHash.hash(Fnv1aHash.OFFSET_BASIS, "a"), "bc");
+    assertThat(ab).isNotEqualTo(bc);
+  }
+
+  @Test
+  public void testCharactersHashLikeStrings() {
+    long hash = Fnv1aHash.OFFSET_BASIS;
+    for (char c : "abc".toCharArray()) {
+      hash = Fnv1aHash.hash(hash, c);
+    }
+    assertThat(Fnv1aHash.separate(hash)).isEqualTo(Fnv1aHash.hash(Fnv1aHash.OFFSET_BASIS, "abc"));
+    assertThat(Fnv1aHash.hash(Fnv1aHash.OFFSET_BASIS, (String) null)).isEqualTo(Fnv1aHash.hash(Fnv1aHash.OFFSET_BASIS, ""));
+  }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.test.TestUtils;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ProcFileSystemSamplerTest {
+
+  private File procDir;
+
+  @Before
+  public void init() throws Exception {
+    procDir = TestUtils.getTestTempDir(getClass(), "proc");
+    writeProcess("1", "0", "init", 50, 50, 0);
+    writeProcess("100", "1", "java", 900, 100, 0);
+  }
+
+  private void writeProcess(String pid, String ppid, String command, long utime, long stime, long childrenTicks) throws Exception {
+    FileUtils.writeStringToFile(new File(procDir, pid + "/stat"), pid + " (" + command + ") S " + ppid
+      + " 100 100 0 -1 4194560 1200 0 0 0 " + utime + " " + stime + " " + childrenTicks + " 0 20 0 1 0 4242 1000000 250\n");
+  }
+
+  private void writeResources(String pid, long peakRssKb, long readBytes, long writtenBytes) throws Exception {
+    FileUtils.writeStringToFile(new File(procDir, pid + "/status"), "Name:\tinspectcode\nVmPeak:\t  900000 kB\nVmHWM:\t  "
+      + peakRssKb + " kB\nVmRSS:\t  1000 kB\n");
+    FileUtils.writeStringToFile(new File(procDir, pid + "/io"), "rchar: 999999\nwchar: 999999\nread_bytes: " + readBytes
+      + "\nwrite_bytes: " + writtenBytes + "\ncancelled_write_bytes: 0\n");
+  }
+
+  @Test
+  public void testDescendantsAreSummed() throws Exception {
+    ProcFileSystemSampler sampler = new ProcFileSystemSampler(procDir, "100", 100);
+    sampler.start();
+    writeProcess("200", "100", "sh", 1, 2, 0);
+    writeResources("200", 1000, 10, 20);
+    writeProcess("300", "200", "mono (inspectcode) 2.0", 40, 10, 0);
+    writeResources("300", 250000, 4000, 8000);
+    writeProcess("400", "1", "unrelated", 700, 700, 0);
+    writeResources("400", 999999, 999999, 999999);
+    sampler.sample();
+
+    // the resources only grow: the last values read are kept, whichever sample they come from
+    writeProcess("300", "200", "mono (inspectcode) 2.0", 80, 20, 0);
+    writeResources("300", 200000, 6000, 9000);
+    ProcessResourceUsage usage = sampler.stop();
+
+    assertThat(usage.getCpuTimeMillis()).isEqualTo((1 + 2 + 80 + 20) * 10);
+    assertThat(usage.getPeakResidentKilobytes()).isEqualTo(1000 + 250000);
+    assertThat(usage.getReadBytes()).isEqualTo(10 + 6000);
+    assertThat(usage.getWrittenBytes()).isEqualTo(20 + 9000);
+  }
+
+  @Test
+  public void testExitedDescendantsAreAccountedByTheirParent() throws Exception {
+    ProcFileSystemSampler sampler = new ProcFileSystemSampler(procDir, "100", 100);
+    writeProcess("100", "1", "java", 900, 100, 30);
+    sampler.start();
+    // inspectcode exited before the first sample: only its CPU time is known, collected by the JVM
+    writeProcess("100", "1", "java", 950, 100, 30 + 125);
+    ProcessResourceUsage usage = sampler.stop();
+
+    assertThat(usage.getCpuTimeMillis()).isEqualTo(1250);
+    assertThat(usage.getPeakResidentKilobytes()).isEqualTo(ProcessResourceUsage.UNKNOWN);
+    assertThat(usage.getReadBytes()).isEqualTo(ProcessResourceUsage.UNKNOWN);
+    assertThat(usage.getWrittenBytes()).isEqualTo(ProcessResourceUsage.UNKNOWN);
+  }
+
+  @Test
+  public void testCpuTimeIsCountedInClockTicks() throws Exception {
+    ProcFileSystemSampler sampler = new ProcFileSystemSampler(procDir, "100", 250);
+    sampler.start();
+    writeProcess("200", "100", "inspectcode", 400, 100, 0);
+    sampler.sample();
+
+    assertThat(sampler.stop().getCpuTimeMillis()).isEqualTo(2000);
+  }
+
+  @Test
+  public void testNothingToMeasure() throws Exception {
+    ProcFileSystemSampler sampler = new ProcFileSystemSampler(procDir, "100", 100);
+    sampler.start();
+    sampler.sample();
+    assertThat(sampler.stop()).isSameAs(ProcessResourceUsage.NOT_MEASURED);
+
+    assertThat(new ProcFileSystemSampler(procDir, null, 100).stop()).isSameAs(ProcessResourceUsage.NOT_MEASURED);
+  }
+
+}
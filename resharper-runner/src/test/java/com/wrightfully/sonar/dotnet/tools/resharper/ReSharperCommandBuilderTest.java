@@ -0,0 +1,93 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.test.TestUtils;
+import org.sonar.api.utils.command.Command;
+import org.sonar.plugins.dotnet.api.microsoft.VisualStudioProject;
+import org.sonar.plugins.dotnet.api.microsoft.VisualStudioSolution;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReSharperCommandBuilderTest {
+
+  private File workDir;
+  private ReSharperCommandBuilder builder;
+  private File solutionFile;
+  private File reportFile;
+
+  @Before
+  public void init() throws Exception {
+    workDir = TestUtils.getTestTempDir(getClass(), "solution");
+    solutionFile = new File(workDir, "Example.sln");
+    reportFile = new File(workDir, "resharper-report.xml");
+
+    VisualStudioSolution solution = mock(VisualStudioSolution.class);
+    when(solution.getSolutionFile()).thenReturn(solutionFile);
+    when(solution.getSolutionDir()).thenReturn(workDir);
+    VisualStudioProject project = mock(VisualStudioProject.class);
+    when(project.getName()).thenReturn("Example.Application");
+
+    builder = ReSharperCommandBuilder.createBuilder(solution, project);
+    builder.setExecutable(new File("inspectcode.exe"));
+    builder.setReportFile(reportFile);
+  }
+
+  @Test
+  public void testCommandLine() throws Exception {
+    builder.setMsBuildProperty("Configuration", "Release");
+    builder.setAdditionalParameters("/no-buildin-settings");
+
+    Command command = builder.toCommand();
+
+    assertThat(command.getArguments()).containsExactly(
+        "/project=Example.Application",
+        "/output=" + reportFile.getAbsolutePath(),
+        "/properties=Configuration=Release",
+        "/no-buildin-settings",
+        solutionFile.getAbsolutePath());
+    assertThat(builder.getConfigFile().exists()).isFalse();
+  }
+
+  @Test
+  public void testLongCommandLineUsesConfigFile() throws Exception {
+    for (int i = 0; i < 500; i++) {
+      builder.addProjectWildcard("Example.Generated.Project" + i);
+    }
+
+    Command command = builder.toCommand();
+
+    File configFile = builder.getConfigFile();
+    assertThat(command.getArguments()).containsExactly("/config=" + configFile.getAbsolutePath());
+
+    String config = FileUtils.readFileToString(configFile, "UTF-8");
+    assertThat(config).contains("<SolutionFile>" + solutionFile.getAbsolutePath() + "</SolutionFile>");
+    assertThat(config).contains("<string>Example.Application</string>");
+    assertThat(config).contains("<string>Example.Generated.Project499</string>");
+  }
+
+}
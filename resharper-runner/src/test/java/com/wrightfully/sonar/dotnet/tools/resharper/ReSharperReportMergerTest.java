@@ -0,0 +1,87 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.test.TestUtils;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperReportMergerTest {
+
+  private File workDir;
+
+  @Before
+  public void init() throws Exception {
+    workDir = TestUtils.getTestTempDir(getClass(), "reports");
+  }
+
+  private File writeReport(String name, String issueTypes, String issues) throws Exception {
+    File report = new File(workDir, name);
+    FileUtils.writeStringToFile(report, "﻿<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+      + "<!-- Generated by InspectCode 8.0.0.0 -->\n"
+      + "<Report ToolsVersion=\"8.0\">\n"
+      + "  <Information>\n    <Solution>Example.sln</Solution>\n  </Information>\n"
+      + "  <IssueTypes>\n" + issueTypes + "  </IssueTypes>\n"
+      + "  <Issues>\n" + issues + "  </Issues>\n"
+      + "</Report>\n", "UTF-8");
+    return report;
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+    String redundantUsing = "    <IssueType Id=\"RedundantUsingDirective\" Category=\"Redundancies in Code\" Description=\"Redundant using directive\" Severity=\"WARNING\" />\n";
+    String unusedParameter = "    <IssueType Id=\"UnusedParameter.Local\" Category=\"Redundancies in Symbol Declarations\" Description=\"Unused parameter\" Severity=\"WARNING\" />\n";
+    String sharedIssue = "      <Issue TypeId=\"RedundantUsingDirective\" File=\"Shared\\Linked.cs\" Offset=\"1-10\" Line=\"1\" Message=\"Using directive is not required\" />\n";
+
+    File first = writeReport("first.xml", redundantUsing,
+      "    <Project Name=\"Example.Application\">\n" + sharedIssue
+        + "      <Issue TypeId=\"RedundantUsingDirective\" File=\"Example.Application\\Program.cs\" Offset=\"1-10\" Line=\"2\" Message=\"Using directive is not required\" />\n"
+        + "    </Project>\n");
+    File second = writeReport("second.xml", redundantUsing + unusedParameter,
+      "    <Project Name=\"Example.Application\">\n" + sharedIssue + "    </Project>\n"
+        + "    <Project Name=\"Example.Core\">\n"
+        + "      <Issue TypeId=\"UnusedParameter.Local\" File=\"Example.Core\\Money.cs\" Offset=\"5-9\" Line=\"12\" Message=\"Parameter 'args' is never used\" />\n"
+        + "    </Project>\n");
+    File merged = new File(workDir, "merged.xml");
+
+    ReSharperReportMerger merger = new ReSharperReportMerger();
+    merger.merge(Arrays.asList(first, second), merged);
+
+    assertThat(merger.getIssueCount()).isEqualTo(3);
+    assertThat(merger.getDuplicateCount()).isEqualTo(1);
+
+    String report = FileUtils.readFileToString(merged, "UTF-8");
+    assertThat(report).contains("<Report ToolsVersion=\"8.0\">");
+    assertThat(report).contains("<Solution>Example.sln</Solution>");
+    assertThat(StringUtils.countMatches(report, "<IssueType ")).isEqualTo(2);
+    assertThat(StringUtils.countMatches(report, "<Project Name=\"Example.Application\">")).isEqualTo(1);
+    assertThat(StringUtils.countMatches(report, "File=\"Shared\\Linked.cs\"")).isEqualTo(1);
+    assertThat(report.indexOf("Example.Application")).isLessThan(report.indexOf("Example.Core"));
+    assertThat(report).contains("Message=\"Parameter 'args' is never used\"");
+  }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.test.TestUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Properties;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperRunStatisticsTest {
+
+  private File workDir;
+
+  @Before
+  public void init() throws Exception {
+    workDir = TestUtils.getTestTempDir(getClass(), "reports");
+  }
+
+  @Test
+  public void testRecord() throws Exception {
+    File report = new File(workDir, "resharper-report-Example.Core.xml");
+    new ReSharperRunStatistics("Example.Core", 1381000000000L, 4200, 0, new ProcessResourceUsage(3500, 250000, 4000, 8000)).record(report);
+
+    Properties statistics = new Properties();
+    InputStream in = new FileInputStream(new File(workDir, "resharper-report-Example.Core.xml" + ReSharperRunStatistics.STATISTICS_FILE_SUFFIX));
+    try {
+      statistics.load(in);
+    } finally {
+      in.close();
+    }
+    assertThat(statistics.getProperty("project")).isEqualTo("Example.Core");
+    assertThat(statistics.getProperty("timestamp")).isEqualTo("1381000000000");
+    assertThat(statistics.getProperty("exitCode")).isEqualTo("0");
+    assertThat(statistics.getProperty("wallTimeMs")).isEqualTo("4200");
+    assertThat(statistics.getProperty("cpuTimeMs")).isEqualTo("3500");
+    assertThat(statistics.getProperty("peakRssKb")).isEqualTo("250000");
+    assertThat(statistics.getProperty("readBytes")).isEqualTo("4000");
+    assertThat(statistics.getProperty("writtenBytes")).isEqualTo("8000");
+  }
+
+  @Test
+  public void testHistoryIsAppended() throws Exception {
+    new ReSharperRunStatistics("Example.Core", 1381000000000L, 4200, 0, new ProcessResourceUsage(3500, 250000, 4000, 8000))
+        .record(new File(workDir, "resharper-report-Example.Core.xml"));
+    new ReSharperRunStatistics("Example.Web", 1381000005000L, 300, 1, ProcessResourceUsage.NOT_MEASURED)
+        .record(new File(workDir, "resharper-report-Example.Web.xml"));
+
+    List<?> lines = FileUtils.readLines(new File(workDir, ReSharperRunStatistics.HISTORY_FILENAME), "UTF-8");
+    assertThat(lines).containsExactly(
+        "timestamp,project,exitCode,wallTimeMs,cpuTimeMs,peakRssKb,readBytes,writtenBytes",
+        "1381000000000,Example.Core,0,4200,3500,250000,4000,8000",
+        "1381000005000,Example.Web,1,300,-1,-1,-1,-1");
+  }
+
+  @Test
+  public void testProjectNamesAreQuotedInTheHistory() throws Exception {
+    new ReSharperRunStatistics("Example.Core;Example,Web", 1381000000000L, 4200, 0, ProcessResourceUsage.NOT_MEASURED)
+        .record(new File(workDir, "resharper-report.xml"));
+
+    List<?> lines = FileUtils.readLines(new File(workDir, ReSharperRunStatistics.HISTORY_FILENAME), "UTF-8");
+    assertThat(lines.get(1)).isEqualTo("1381000000000,\"Example.Core;Example,Web\",0,4200,-1,-1,-1,-1");
+  }
+
+}
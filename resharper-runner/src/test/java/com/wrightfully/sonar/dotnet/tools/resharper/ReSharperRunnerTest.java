@@ -0,0 +1,196 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.test.TestUtils;
+import org.sonar.plugins.dotnet.api.microsoft.SourceFile;
+import org.sonar.plugins.dotnet.api.microsoft.VisualStudioProject;
+import org.sonar.plugins.dotnet.api.microsoft.VisualStudioSolution;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReSharperRunnerTest {
+
+  private File workDir;
+  private VisualStudioSolution solution;
+  private final List<VisualStudioProject> projects = new ArrayList<VisualStudioProject>();
+  private ReSharperRunner runner;
+  private File runLog;
+
+  @Before
+  public void init() throws Exception {
+    Assume.assumeTrue(File.separatorChar == '/');
+    workDir = TestUtils.getTestTempDir(getClass(), "solution").getAbsoluteFile();
+    solution = mock(VisualStudioSolution.class);
+    when(solution.getSolutionFile()).thenReturn(new File(workDir, "Example.sln"));
+    when(solution.getSolutionDir()).thenReturn(workDir);
+    when(solution.getProjects()).thenReturn(projects);
+    addProject("Example.Core", "");
+    addProject("Example.Application", "<ProjectReference Include=\"..\\Example.Core\\Example.Core.csproj\" />");
+    addProject("Example.Web", "<ProjectReference Include=\"..\\Example.Application\\Example.Application.csproj\" />");
+
+    // stand-in for inspectcode: logs each run and reports one issue per inspected project, tagged with the run number
+    File executable = new File(workDir, "inspectcode.exe");
+    runLog = new File(workDir, "runs.log");
+    FileUtils.writeStringToFile(executable, "#!/bin/sh\n"
+      + "config=\"${1#/config=}\"\n"
+      + "output=$(sed -n 's:.*<OutputFile>\\(.*\\)</OutputFile>.*:\\1:p' \"$config\")\n"
+      + "projects=$(sed -n '/<ProjectWildcards>/,/<\\/ProjectWildcards>/s:.*<string>\\(.*\\)</string>.*:\\1:p' \"$config\")\n"
+      + "[ -n \"$projects\" ] || projects='Example.Application Example.Core Example.Web'\n"
+      + "echo run >> \"" + runLog.getAbsolutePath() + "\"\n"
+      + "run=$(wc -l < \"" + runLog.getAbsolutePath() + "\")\n"
+      + "{\n"
+      + "  echo '<Report ToolsVersion=\"8.0\"><IssueTypes><IssueType Id=\"UnusedVariable\" Severity=\"WARNING\"/></IssueTypes><Issues>'\n"
+      + "  for project in $projects; do\n"
+      + "    echo \"<Project Name=\\\"$project\\\"><Issue TypeId=\\\"UnusedVariable\\\" File=\\\"$project\\\\Class1.cs\\\" Line=\\\"1\\\" Message=\\\"run $run\\\"/></Project>\"\n"
+      + "  done\n"
+      + "  echo '</Issues></Report>'\n"
+      + "} > \"$output\"\n");
+    executable.setExecutable(true);
+    runner = ReSharperRunner.create(workDir.getAbsolutePath());
+  }
+
+  private void addProject(String name, String references) throws Exception {
+    File file = new File(workDir, name + "/Class1.cs");
+    FileUtils.writeStringToFile(file, "class Class1 {}");
+    File projectFile = new File(workDir, name + "/" + name + ".csproj");
+    FileUtils.writeStringToFile(projectFile, "<Project xmlns=\"http://schemas.microsoft.com/developer/msbuild/2003\">"
+      + "<ItemGroup><Compile Include=\"Class1.cs\" /></ItemGroup><ItemGroup>" + references + "</ItemGroup></Project>");
+    SourceFile sourceFile = mock(SourceFile.class);
+    when(sourceFile.getFile()).thenReturn(file);
+    VisualStudioProject project = mock(VisualStudioProject.class);
+    when(project.getName()).thenReturn(name);
+    when(project.getProjectFile()).thenReturn(projectFile);
+    when(project.getSourceFiles()).thenReturn(Collections.singletonList(sourceFile));
+    projects.add(project);
+  }
+
+  private ReSharperCommandBuilder newBuilder(boolean noSolutionWideAnalysis, String configuration) {
+    return newBuilder(projects.get(1), "resharper-report.xml", noSolutionWideAnalysis, configuration);
+  }
+
+  private ReSharperCommandBuilder newBuilder(VisualStudioProject project, String reportFileName, boolean noSolutionWideAnalysis,
+      String configuration) {
+    ReSharperCommandBuilder builder = runner.createCommandBuilder(solution, project);
+    builder.setReportFile(new File(workDir, reportFileName));
+    builder.setUseConfigFile(true);
+    builder.setChangedFilesOnly(true);
+    builder.setNoSolutionWideAnalysis(noSolutionWideAnalysis);
+    builder.setMsBuildProperty("Configuration", configuration);
+    return builder;
+  }
+
+  private int runCount() throws Exception {
+    return runLog.isFile() ? FileUtils.readLines(runLog).size() : 0;
+  }
+
+  private void touch(String path) throws Exception {
+    FileUtils.writeStringToFile(new File(workDir, path), "class Class1 { int changed; }");
+  }
+
+  @Test
+  public void testReportIsReusedUntilTheProjectOrItsReferencesChange() throws Exception {
+    runner.execute(newBuilder(true, "Release"), 1);
+    runner.execute(newBuilder(true, "Release"), 1);
+    assertThat(runCount()).isEqualTo(1);
+    assertThat(new File(workDir, "resharper-report.xml")).exists();
+
+    // Example.Web references Example.Application, not the other way around
+    touch("Example.Web/Class1.cs");
+    runner.execute(newBuilder(true, "Release"), 1);
+    assertThat(runCount()).isEqualTo(1);
+
+    touch("Example.Core/Class1.cs");
+    runner.execute(newBuilder(true, "Release"), 1);
+    assertThat(runCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testReportIsNotReusedWhenTheConfigFileChanges() throws Exception {
+    runner.execute(newBuilder(true, "Release"), 1);
+    // the parameters are only in the /config file, the command line is the same
+    runner.execute(newBuilder(true, "Debug"), 1);
+    assertThat(runCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testSolutionWideAnalysisDependsOnTheReferencingProjects() throws Exception {
+    runner.execute(newBuilder(false, "Release"), 1);
+    // the usages of the symbols of Example.Application by Example.Web may have changed
+    touch("Example.Web/Class1.cs");
+    runner.execute(newBuilder(false, "Release"), 1);
+    assertThat(runCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testOnlyTheChangedProjectsAndTheirDependentsAreInspectedAgain() throws Exception {
+    File report = new File(workDir, "resharper-report.xml");
+    runner.execute(newBuilder(null, "resharper-report.xml", true, "Release"), 1);
+    assertThat(messagesByProject(report)).isEqualTo("Example.Application=run 1, Example.Core=run 1, Example.Web=run 1");
+
+    touch("Example.Application/Class1.cs");
+    runner.execute(newBuilder(null, "resharper-report.xml", true, "Release"), 1);
+    assertThat(runCount()).isEqualTo(2);
+    assertThat(messagesByProject(report)).isEqualTo("Example.Application=run 2, Example.Core=run 1, Example.Web=run 2");
+
+    runner.execute(newBuilder(null, "resharper-report.xml", true, "Release"), 1);
+    assertThat(runCount()).isEqualTo(2);
+    assertThat(messagesByProject(report)).isEqualTo("Example.Application=run 2, Example.Core=run 1, Example.Web=run 2");
+  }
+
+  @Test
+  public void testBuildersOfTheSameDirectoryHaveTheirOwnBaseline() throws Exception {
+    ReSharperCommandBuilder core = newBuilder(null, "resharper-report-shard-0.xml", true, "Release").addProjectWildcard("Example.Core");
+    runner.execute(core, 1);
+    ReSharperCommandBuilder web = newBuilder(null, "resharper-report-shard-1.xml", true, "Release").addProjectWildcard("Example.Web");
+    runner.execute(web, 1);
+    runner.execute(newBuilder(null, "resharper-report-shard-0.xml", true, "Release").addProjectWildcard("Example.Core"), 1);
+    assertThat(runCount()).isEqualTo(2);
+  }
+
+  /**
+   * @return the message of the issue of each project of a report generated by the stand-in of inspectcode
+   */
+  private static String messagesByProject(File report) throws Exception {
+    Map<String, String> messages = new TreeMap<String, String>();
+    String xml = FileUtils.readFileToString(report, "UTF-8");
+    Matcher matcher = Pattern.compile("<Project Name=\"([^\"]+)\">\\s*<Issue [^>]*Message=\"([^\"]+)\"").matcher(xml);
+    while (matcher.find()) {
+      messages.put(matcher.group(1), matcher.group(2));
+    }
+    return messages.toString().replaceAll("[{}]", "");
+  }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * .NET tools :: ReSharper Runner
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.dotnet.tools.resharper;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.plugins.dotnet.api.microsoft.SourceFile;
+import org.sonar.plugins.dotnet.api.microsoft.VisualStudioProject;
+import org.sonar.plugins.dotnet.api.microsoft.VisualStudioSolution;
+import org.sonar.test.TestUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReSharperShardPlannerTest {
+
+  private File workDir;
+  private VisualStudioSolution solution;
+  private final List<VisualStudioProject> projects = new ArrayList<VisualStudioProject>();
+
+  @Before
+  public void init() throws Exception {
+    workDir = TestUtils.getTestTempDir(getClass(), "solution");
+    solution = mock(VisualStudioSolution.class);
+    when(solution.getSolutionFile()).thenReturn(new File(workDir, "Example.sln"));
+    when(solution.getSolutionDir()).thenReturn(workDir);
+    when(solution.getProjects()).thenReturn(projects);
+    addProject("Example.Core", 500);
+    addProject("Example.Application", 400);
+    addProject("Example.Web", 300);
+    addProject("Example.Core.Tests", 200);
+    addProject("Example.Web.Tests", 100);
+  }
+
+  private void addProject(String name, int size) throws Exception {
+    File file = new File(workDir, name + "/Class1.cs");
+    FileUtils.writeStringToFile(file, String.format("%" + size + "s", ""));
+    SourceFile sourceFile = mock(SourceFile.class);
+    when(sourceFile.getFile()).thenReturn(file);
+    VisualStudioProject project = mock(VisualStudioProject.class);
+    when(project.getName()).thenReturn(name);
+    when(project.getSourceFiles()).thenReturn(Collections.singletonList(sourceFile));
+    projects.add(project);
+  }
+
+  @Test
+  public void testPlanFromSizes() {
+    List<ReSharperShardPlanner.Shard> shards = new ReSharperShardPlanner(solution).plan(2);
+
+    assertThat(shards).hasSize(2);
+    assertThat(shards.get(0).getProjects()).containsExactly("Example.Core", "Example.Core.Tests", "Example.Web.Tests");
+    assertThat(shards.get(0).getEstimatedCost()).isEqualTo(800);
+    assertThat(shards.get(1).getProjects()).containsExactly("Example.Application", "Example.Web");
+    assertThat(shards.get(1).getEstimatedCost()).isEqualTo(700);
+  }
+
+  @Test
+  public void testPlanFromHistory() throws Exception {
+    File history = new File(workDir, ReSharperRunStatistics.HISTORY_FILENAME);
+    FileUtils.writeStringToFile(history, "timestamp,project,exitCode,wallTimeMs,cpuTimeMs,peakRssKb,readBytes,writtenBytes\n"
+      + "1,Example.Web.Tests,0,9000,-1,-1,-1,-1\n"
+      + "2,Example.Core;Example.Application,0,900,-1,-1,-1,-1\n"
+      + "3,Example.Web,1,1,-1,-1,-1,-1\n", "UTF-8");
+    ReSharperShardPlanner planner = new ReSharperShardPlanner(solution);
+    planner.loadHistory(history);
+
+    List<ReSharperShardPlanner.Shard> shards = planner.plan(3);
+
+    // the slow tests get a shard of their own, the sizes of the others are converted with the average speed
+    assertThat(shards).hasSize(3);
+    assertThat(shards.get(0).getProjects()).containsExactly("Example.Web.Tests");
+    assertThat(shards.get(0).getEstimatedCost()).isEqualTo(9000);
+  }
+
+  @Test
+  public void testShardsRunWithStandInInspectCode() throws Exception {
+    Assume.assumeTrue(File.separatorChar == '/');
+    File executable = new File(workDir, "inspectcode.exe");
+    FileUtils.writeStringToFile(executable, "#!/bin/sh\n"
+      + "config=\"${1#/config=}\"\n"
+      + "output=$(sed -n 's:.*<OutputFile>\\(.*\\)</OutputFile>.*:\\1:p' \"$config\")\n"
+      + "{ echo '<?xml version=\"1.0\" encoding=\"utf-8\"?>'; echo '<Report ToolsVersion=\"8.0\"><IssueTypes/><Issues>'\n"
+      + "  sed -n 's:.*<string>\\(.*\\)</string>.*:<Project Name=\"\\1\"/>:p' \"$config\"\n"
+      + "  echo '</Issues></Report>'; } > \"$output\"\n");
+    executable.setExecutable(true);
+    ReSharperRunner runner = ReSharperRunner.create(workDir.getAbsolutePath());
+    File reportDir = new File(workDir, "reports");
+    reportDir.mkdirs();
+
+    ReSharperShardPlanner planner = new ReSharperShardPlanner(solution);
+    List<ReSharperShardPlanner.Shard> shards = planner.plan(2);
+    List<File> reports = new ArrayList<File>();
+    for (ReSharperCommandBuilder builder : planner.createCommandBuilders(shards, runner, reportDir)) {
+      runner.execute(builder, 1);
+      reports.add(builder.getReportFile());
+    }
+
+    assertThat(reports.get(1).getName()).isEqualTo("resharper-report-shard-2.xml");
+    File merged = new File(reportDir, "resharper-report.xml");
+    new ReSharperReportMerger().merge(reports, merged);
+    String report = FileUtils.readFileToString(merged, "UTF-8");
+    for (VisualStudioProject project : projects) {
+      assertThat(report).contains("<Project Name=\"" + project.getName() + "\">");
+    }
+
+    // the durations of the shards are recorded and can drive the next plan
+    planner.loadHistory(new File(reportDir, ReSharperRunStatistics.HISTORY_FILENAME));
+    assertThat(planner.plan(2)).hasSize(2);
+  }
+
+}
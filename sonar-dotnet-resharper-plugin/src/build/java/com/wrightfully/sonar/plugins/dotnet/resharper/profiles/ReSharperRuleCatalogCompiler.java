@@ -0,0 +1,156 @@
+/*
+ * Sonar .NET Plugin :: ReSharper
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.plugins.dotnet.resharper.profiles;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.utils.ValidationMessages;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Compiles a ReSharper rules file into the binary form read by {@link ReSharperRuleCatalog#readCompiled(InputStream)}, so
+ * that the server does not parse XML at startup. The compiled file is then read back the way the server reads it, and
+ * compared with the XML source: any difference fails the build. Part of the build-only sources (src/build/java), so that it
+ * is not shipped with the plugin, and run by the Maven build at the process-classes phase, whatever the test flags:
+ *
+ * <pre>
+ * ReSharperRuleCatalogCompiler &lt;rules XML file&gt; &lt;compiled output file&gt;
+ * </pre>
+ */
+public final class ReSharperRuleCatalogCompiler {
+
+    private ReSharperRuleCatalogCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: ReSharperRuleCatalogCompiler <rules XML file> <compiled output file>");
+        }
+        File source = new File(args[0]);
+        File target = new File(args[1]);
+
+        List<ReSharperRule> rules = parse(source);
+        target.getAbsoluteFile().getParentFile().mkdirs();
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(target);
+            write(rules, out);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+
+        try {
+            verify(rules, readCompiled(target));
+        } catch (IllegalStateException e) {
+            // no stale resource for the next build to package
+            target.delete();
+            throw e;
+        }
+    }
+
+    private static List<ReSharperRule> readCompiled(File target) throws IOException {
+        InputStream in = null;
+        try {
+            in = new FileInputStream(target);
+            return ReSharperRuleCatalog.readCompiled(in).getRules();
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Checks that the compiled rules are the ones of the XML source, in the same order and with the same fields.
+     *
+     * @throws IllegalStateException
+     *           at the first difference
+     */
+    static void verify(List<ReSharperRule> expected, List<ReSharperRule> actual) {
+        if (actual.size() != expected.size()) {
+            throw new IllegalStateException("The compiled ReSharper rule catalog has " + actual.size() + " rules instead of " + expected.size());
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            ReSharperRule expectedRule = expected.get(i);
+            ReSharperRule actualRule = actual.get(i);
+            if (!StringUtils.equals(actualRule.getId(), expectedRule.getId())
+                || actualRule.isEnabled() != expectedRule.isEnabled()
+                || !StringUtils.equals(actualRule.getCategory(), StringUtils.defaultString(expectedRule.getCategory()))
+                || !StringUtils.equals(actualRule.getDescription(), StringUtils.defaultString(expectedRule.getDescription()))
+                || !StringUtils.equals(actualRule.getWikiLink(), StringUtils.defaultString(expectedRule.getWikiLink()))
+                || actualRule.getSeverity() != expectedRule.getSeverity()
+                || !StringUtils.equals(actualRule.getKey(), expectedRule.getKey())) {
+                throw new IllegalStateException("The compiled ReSharper rule " + actualRule.getId() + " differs from its definition "
+                    + expectedRule.getId() + " in the XML source");
+            }
+        }
+    }
+
+    private static List<ReSharperRule> parse(File source) throws IOException {
+        ValidationMessages messages = ValidationMessages.create();
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(source), "UTF-8");
+            List<ReSharperRule> rules = ReSharperFileParser.parseRules(reader, messages);
+            if (messages.hasErrors()) {
+                throw new IllegalStateException("Invalid ReSharper rules file " + source + ": " + messages.getErrors());
+            }
+            return rules;
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Writes the compiled form of the given rules.
+     *
+     * @param rules
+     *          the rules, in definition order
+     * @param out
+     *          the destination, not closed by this method
+     * @throws IOException
+     *           if the destination cannot be written
+     */
+    public static void write(List<ReSharperRule> rules, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(ReSharperRuleCatalog.COMPILED_MAGIC);
+        data.writeInt(ReSharperRuleCatalog.COMPILED_FORMAT_VERSION);
+        data.writeInt(rules.size());
+        for (ReSharperRule rule : rules) {
+            data.writeUTF(StringUtils.defaultString(rule.getId()));
+            data.writeBoolean(rule.isEnabled());
+            data.writeUTF(StringUtils.defaultString(rule.getCategory()));
+            data.writeUTF(StringUtils.defaultString(rule.getDescription()));
+            data.writeUTF(StringUtils.defaultString(rule.getWikiLink()));
+            data.writeUTF(rule.getSeverity().name());
+        }
+        data.flush();
+    }
+
+}
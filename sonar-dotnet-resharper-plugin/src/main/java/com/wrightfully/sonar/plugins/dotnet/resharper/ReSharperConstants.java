@@ -38,11 +38,13 @@ public final class ReSharperConstants {
 
     public static final String REPORTS_PATH_KEY = "sonar.resharper.reports.path";
     public static final String REPORT_FILENAME = "resharper-report.xml";
+    public static final String MERGED_REPORT_FILENAME = "resharper-report-merged.xml";
 
     public static final String INSTALL_DIR_KEY = "sonar.resharper.installDirectory";
     public static final String INSTALL_DIR_DEFVALUE = "C:/jetbrains-commandline-tools";
 
     public static final String DOTSETTINGS_FILE_PATH = "sonar.resharper.dotSettings.path";
+    public static final String PROFILE_DOTSETTINGS_FILENAME = "resharper-profile.DotSettings";
     public static final String ADDITIONAL_CMD_ARGS = "sonar.resharper.additionalArguments" ;
 
 
@@ -52,4 +54,15 @@ public final class ReSharperConstants {
     public static final String CUSTOM_RULES_PROP_KEY = "sonar.resharper.customRules.definition";
 
     public static final String INCLUDE_ALL_FILES = "sonar.resharper.includeAllFiles";
+
+    public static final String SOLUTION_WIDE_ANALYSIS_KEY = "sonar.resharper.solutionWideAnalysis";
+    public static final String SOLUTION_WIDE_ANALYSIS_AUTO = "auto";
+    public static final String SOLUTION_WIDE_ANALYSIS_ALWAYS = "always";
+    public static final String SOLUTION_WIDE_ANALYSIS_NEVER = "never";
+
+    public static final String CHANGED_FILES_ONLY_KEY = "sonar.resharper.changedFilesOnly";
+
+    public static final String ISSUE_BASELINE_PATH_KEY = "sonar.resharper.issueBaseline.path";
+
+    public static final String INCREMENTAL_KEY = "sonar.resharper.incremental";
 }
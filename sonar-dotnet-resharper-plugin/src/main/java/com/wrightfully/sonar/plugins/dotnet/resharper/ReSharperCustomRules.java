@@ -0,0 +1,145 @@
+/*
+ * Sonar .NET Plugin :: ReSharper
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.plugins.dotnet.resharper;
+
+import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperFileParser;
+import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperRule;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the custom rules defined through the Web interface ({@link ReSharperConstants#CUSTOM_RULES_PROP_KEY}). The rule
+ * parsed from each &lt;IssueType&gt; element is kept, keyed by the element text, so that when the property changes only
+ * the new or modified elements are parsed again. One instance serves the repositories created by a
+ * {@link ReSharperRuleRepositoryProvider}, which all read the same property.
+ */
+class ReSharperCustomRules {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReSharperCustomRules.class);
+
+    private static final Pattern ISSUE_TYPE_ELEMENT = Pattern.compile("<IssueType\\b[^>]*?(?:/>|>.*?</IssueType\\s*>)", Pattern.DOTALL);
+
+    /**
+     * Latest parsed value, and its rules
+     */
+    private String definition;
+    private List<ReSharperRule> rules = Collections.emptyList();
+
+    /**
+     * Rules of the elements of the latest parsed value, by element text
+     */
+    private Map<String, ReSharperRule> rulesByElement = Collections.emptyMap();
+
+    /**
+     * Returns the rules defined by the given property value, in definition order.
+     *
+     * @param customRules
+     *          the &lt;IssueType&gt; elements
+     * @return the rules, or an empty list if the value cannot be parsed
+     */
+    synchronized List<ReSharperRule> parse(String customRules) {
+        if (!customRules.equals(definition)) {
+            rules = Collections.unmodifiableList(parseChanges(customRules));
+            definition = customRules;
+        }
+        return rules;
+    }
+
+    private List<ReSharperRule> parseChanges(String customRules) {
+        List<String> elements = split(customRules);
+        if (elements == null) {
+            // not a plain list of IssueType elements: parse it as a whole, without caching
+            rulesByElement = Collections.emptyMap();
+            return parseDocument(customRules);
+        }
+
+        Map<String, ReSharperRule> previousRules = rulesByElement;
+        List<String> changedElements = new ArrayList<String>();
+        for (String element : elements) {
+            if (!previousRules.containsKey(element)) {
+                changedElements.add(element);
+            }
+        }
+
+        Map<String, ReSharperRule> elementRules = new HashMap<String, ReSharperRule>();
+        if (!changedElements.isEmpty()) {
+            List<ReSharperRule> changedRules = parseDocument(StringUtils.join(changedElements, ""));
+            if (changedRules.size() != changedElements.size()) {
+                // the split does not match what the parser reads (or the value is malformed): trust the parser alone
+                rulesByElement = Collections.emptyMap();
+                return parseDocument(customRules);
+            }
+            for (int i = 0; i < changedElements.size(); i++) {
+                elementRules.put(changedElements.get(i), changedRules.get(i));
+            }
+            LOG.info("Parsed " + changedElements.size() + " new or modified ReSharper custom rules, reused " + (elements.size() - changedElements.size()));
+        }
+
+        List<ReSharperRule> result = new ArrayList<ReSharperRule>(elements.size());
+        for (String element : elements) {
+            ReSharperRule rule = elementRules.get(element);
+            if (rule == null) {
+                rule = previousRules.get(element);
+                elementRules.put(element, rule);
+            }
+            result.add(rule);
+        }
+        rulesByElement = elementRules;
+        return result;
+    }
+
+    /**
+     * Splits the value into IssueType elements.
+     *
+     * @return the elements, or null if the value holds anything else than IssueType elements and blanks
+     */
+    static List<String> split(String customRules) {
+        List<String> elements = new ArrayList<String>();
+        Matcher matcher = ISSUE_TYPE_ELEMENT.matcher(customRules);
+        int end = 0;
+        while (matcher.find()) {
+            if (StringUtils.isNotBlank(customRules.substring(end, matcher.start()))) {
+                return null;
+            }
+            elements.add(matcher.group());
+            end = matcher.end();
+        }
+        if (StringUtils.isNotBlank(customRules.substring(end))) {
+            return null;
+        }
+        return elements;
+    }
+
+    private static List<ReSharperRule> parseDocument(String issueTypes) {
+        String customRulesXml = "<Report><IssueTypes>" + issueTypes + "</IssueTypes></Report>";
+        return ReSharperFileParser.parseRules(new StringReader(customRulesXml));
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Sonar .NET Plugin :: ReSharper
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.plugins.dotnet.resharper;
+
+import org.apache.commons.io.IOUtils;
+import org.codehaus.staxmate.SMInputFactory;
+import org.codehaus.staxmate.in.SMHierarchicCursor;
+import org.codehaus.staxmate.in.SMInputCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.plugins.dotnet.api.utils.StaxParserUtils;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Fingerprints of the issues known at a baseline, computed by {@link ReSharperIssueFingerprinter}. The baseline file holds
+ * the sorted fingerprints after a small header, one per issue: identical issues (same type, file, message and code) keep
+ * their count, so that a new occurrence beyond that count is reported. The file is memory-mapped: looking an issue up is a
+ * binary search that does not grow the heap, whatever the size of the baseline. To (re)generate a baseline from a report:
+ *
+ * <pre>
+ * ReSharperIssueBaseline &lt;report file&gt; &lt;solution directory&gt; &lt;baseline file&gt; [source encoding]
+ * </pre>
+ */
+public final class ReSharperIssueBaseline {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReSharperIssueBaseline.class);
+
+    static final int MAGIC = 0x5253424c;
+    /**
+     * Version 1 files held each fingerprint once, which reads as a count of one
+     */
+    static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+
+    private final LongBuffer fingerprints;
+
+    private ReSharperIssueBaseline(LongBuffer fingerprints) {
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * Maps a baseline file.
+     *
+     * @param baselineFile
+     *          a file written by {@link #write(long[], File)}
+     * @throws IOException
+     *           if the file cannot be read or is not a baseline
+     */
+    public static ReSharperIssueBaseline load(File baselineFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(baselineFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE || (size - HEADER_SIZE) % 8 != 0) {
+                throw new IOException("Not a ReSharper issue baseline: " + baselineFile);
+            }
+            // the mapping remains valid once the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int version;
+            if (buffer.getInt() != MAGIC || (version = buffer.getInt()) < 1 || version > FORMAT_VERSION) {
+                throw new IOException("Not a ReSharper issue baseline, or written by another version of the plugin: " + baselineFile);
+            }
+            return new ReSharperIssueBaseline(buffer.slice().asLongBuffer());
+        } finally {
+            IOUtils.closeQuietly(file);
+        }
+    }
+
+    /**
+     * @return true if at least one issue of the given fingerprint was known at the baseline
+     */
+    public boolean contains(long fingerprint) {
+        return count(fingerprint) > 0;
+    }
+
+    /**
+     * @return the number of issues of the given fingerprint known at the baseline
+     */
+    public int count(long fingerprint) {
+        int first = firstIndexOf(fingerprint);
+        return first < 0 ? 0 : search(fingerprint, first, true) - first;
+    }
+
+    /**
+     * @return the index of the first occurrence of the fingerprint, or -1 if it is not in the baseline
+     */
+    private int firstIndexOf(long fingerprint) {
+        int first = search(fingerprint, 0, false);
+        return first < fingerprints.limit() && fingerprints.get(first) == fingerprint ? first : -1;
+    }
+
+    /**
+     * @return the index of the first fingerprint greater than (or equal to, unless after) the given one, from the given
+     *         index on
+     */
+    private int search(long fingerprint, int from, boolean after) {
+        int low = from;
+        int high = fingerprints.limit();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long value = fingerprints.get(middle);
+            if (value < fingerprint || (after && value == fingerprint)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Starts matching the issues of a report against the baseline: each known issue matches as many times as it was found
+     * at the baseline.
+     */
+    public Occurrences newOccurrences() {
+        return new Occurrences();
+    }
+
+    /**
+     * Issues of a report matched so far against the baseline. Each matched occurrence is a bit at its position in the
+     * baseline, so that matching takes one bit per known issue at most.
+     */
+    public final class Occurrences {
+
+        private final BitSet matched = new BitSet();
+        private int matchedCount;
+
+        private Occurrences() {
+        }
+
+        /**
+         * @return true once every issue of the baseline was matched: no other issue can match, and the issues need no
+         *         fingerprint anymore
+         */
+        public boolean isExhausted() {
+            return matchedCount == fingerprints.limit();
+        }
+
+        /**
+         * Matches an issue against the baseline.
+         *
+         * @return true if the issue was known at the baseline and its occurrences found so far do not exceed its count
+         */
+        public boolean match(long fingerprint) {
+            int first = firstIndexOf(fingerprint);
+            if (first < 0) {
+                return false;
+            }
+            int next = matched.nextClearBit(first);
+            if (next < fingerprints.limit() && fingerprints.get(next) == fingerprint) {
+                matched.set(next);
+                matchedCount++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @return the number of issues of the baseline
+     */
+    public int size() {
+        return fingerprints.limit();
+    }
+
+    /**
+     * Writes a baseline file.
+     *
+     * @param fingerprints
+     *          the fingerprints, in any order: a fingerprint found n times counts n issues
+     * @param baselineFile
+     *          the destination file
+     */
+    public static void write(long[] fingerprints, File baselineFile) throws IOException {
+        long[] sorted = fingerprints.clone();
+        Arrays.sort(sorted);
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(baselineFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            for (long fingerprint : sorted) {
+                out.writeLong(fingerprint);
+            }
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * Computes the fingerprints of all the issues of a report, whatever their project.
+     *
+     * @param reportFile
+     *          the report generated by inspectcode
+     * @param fingerprinter
+     *          the fingerprinter of the solution of the report
+     */
+    public static long[] fingerprintReport(File reportFile, ReSharperIssueFingerprinter fingerprinter) throws IOException {
+        long[] result = new long[256];
+        int count = 0;
+
+        SMInputFactory inputFactory = StaxParserUtils.initStax();
+        InputStream in = null;
+        try {
+            in = new FileInputStream(reportFile);
+            SMHierarchicCursor cursor = inputFactory.rootElementCursor(in);
+            SMInputCursor mainCursor = cursor.advance().childElementCursor("Issues");
+            while (mainCursor.getNext() != null) {
+                SMInputCursor projectsCursor = mainCursor.childElementCursor("Project");
+                while (projectsCursor.getNext() != null) {
+                    SMInputCursor issuesCursor = projectsCursor.childElementCursor("Issue");
+                    while (issuesCursor.getNext() != null) {
+                        if (count == result.length) {
+                            result = copy(result, count, count * 2);
+                        }
+                        result[count++] = fingerprinter.fingerprint(issuesCursor.getAttrValue("TypeId"), issuesCursor.getAttrValue("File"),
+                            issuesCursor.getAttrValue("Message"), issuesCursor.getAttrValue("Line"));
+                    }
+                }
+            }
+            cursor.getStreamReader().closeCompletely();
+        } catch (XMLStreamException e) {
+            IOException exception = new IOException("Error while reading ReSharper result file: " + reportFile.getAbsolutePath());
+            exception.initCause(e);
+            throw exception;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        return copy(result, count, count);
+    }
+
+    private static long[] copy(long[] values, int count, int length) {
+        long[] result = new long[length];
+        System.arraycopy(values, 0, result, 0, count);
+        return result;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3 || args.length > 4) {
+            throw new IllegalArgumentException("Usage: ReSharperIssueBaseline <report file> <solution directory> <baseline file> [source encoding]");
+        }
+        Charset charset = Charset.forName(args.length == 4 ? args[3] : "UTF-8");
+        ReSharperIssueFingerprinter fingerprinter = new ReSharperIssueFingerprinter(new File(args[1]), charset);
+        long[] fingerprints = fingerprintReport(new File(args[0]), fingerprinter);
+        write(fingerprints, new File(args[2]));
+        LOG.info("Wrote the fingerprints of " + fingerprints.length + " issues to " + args[2]);
+    }
+
+}
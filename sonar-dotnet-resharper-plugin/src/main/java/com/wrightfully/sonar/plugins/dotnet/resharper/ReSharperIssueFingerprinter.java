@@ -0,0 +1,205 @@
+/*
+ * Sonar .NET Plugin :: ReSharper
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.plugins.dotnet.resharper;
+
+import com.wrightfully.sonar.dotnet.tools.resharper.Fnv1aHash;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Computes the 64-bit fingerprints identifying the issues of ReSharper reports across analyses. A fingerprint depends on
+ * the IssueType, the path of the file relative to the solution, the message with its whitespace normalized and the
+ * content of the reported line, so that it survives the insertion or removal of lines above the issue.
+ */
+public class ReSharperIssueFingerprinter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReSharperIssueFingerprinter.class);
+
+    private static final long[] NO_LINES = new long[0];
+
+    /**
+     * Number of files whose line hashes are kept: the issues of a report are grouped by file
+     */
+    private static final int CACHED_FILES = 64;
+
+    private final File solutionDir;
+    private final Charset charset;
+    private final Map<String, long[]> lineHashesByPath = new LinkedHashMap<String, long[]>(CACHED_FILES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+            return size() > CACHED_FILES;
+        }
+    };
+
+    /**
+     * @param solutionDir
+     *          the directory the paths of the reports are relative to
+     * @param charset
+     *          the encoding of the source files
+     */
+    public ReSharperIssueFingerprinter(File solutionDir, Charset charset) {
+        this.solutionDir = solutionDir;
+        this.charset = charset;
+    }
+
+    /**
+     * Returns the fingerprint of an issue, from the attributes of its Issue element.
+     *
+     * @param typeId
+     *          the TypeId attribute
+     * @param filePath
+     *          the File attribute, relative to the solution directory
+     * @param message
+     *          the Message attribute
+     * @param line
+     *          the Line attribute, null for the issues on a whole file
+     */
+    public long fingerprint(String typeId, String filePath, String message, String line) {
+        int lineNumber = 0;
+        if (line != null) {
+            try {
+                lineNumber = Integer.parseInt(line);
+            } catch (NumberFormatException e) {
+                lineNumber = 0;
+            }
+        }
+        return fingerprint(typeId, filePath, message, lineNumber);
+    }
+
+    /**
+     * Returns the fingerprint of an issue whose Line attribute was already parsed.
+     *
+     * @param line
+     *          the line number, 0 or less for the issues on a whole file or with an invalid line
+     */
+    public long fingerprint(String typeId, String filePath, String message, int line) {
+        long hash = Fnv1aHash.hash(Fnv1aHash.OFFSET_BASIS, typeId);
+        hash = hashPath(hash, filePath);
+        hash = hashMessage(hash, message);
+        return Fnv1aHash.hash(hash, lineContentHash(filePath, line));
+    }
+
+    /**
+     * Hashes a path regardless of the case and of the separators, as Windows does.
+     */
+    private static long hashPath(long hash, String path) {
+        long result = hash;
+        if (path != null) {
+            for (int i = 0; i < path.length(); i++) {
+                char c = path.charAt(i);
+                result = Fnv1aHash.hash(result, c == '\\' ? '/' : Character.toLowerCase(c));
+            }
+        }
+        return Fnv1aHash.separate(result);
+    }
+
+    /**
+     * Hashes a message with its leading and trailing whitespace removed, and every other whitespace run read as one space.
+     */
+    private static long hashMessage(long hash, String message) {
+        long result = hash;
+        if (message != null) {
+            boolean pendingSpace = false;
+            boolean started = false;
+            for (int i = 0; i < message.length(); i++) {
+                char c = message.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    pendingSpace = started;
+                    continue;
+                }
+                if (pendingSpace) {
+                    result = Fnv1aHash.hash(result, ' ');
+                    pendingSpace = false;
+                }
+                result = Fnv1aHash.hash(result, c);
+                started = true;
+            }
+        }
+        return Fnv1aHash.separate(result);
+    }
+
+    private long lineContentHash(String filePath, int line) {
+        if (line <= 0 || filePath == null) {
+            return 0;
+        }
+        long[] lineHashes = getLineHashes(filePath);
+        return line <= lineHashes.length ? lineHashes[line - 1] : 0;
+    }
+
+    private long[] getLineHashes(String filePath) {
+        long[] lineHashes = lineHashesByPath.get(filePath);
+        if (lineHashes == null) {
+            lineHashes = readLineHashes(new File(solutionDir, FilenameUtils.separatorsToSystem(filePath)));
+            lineHashesByPath.put(filePath, lineHashes);
+        }
+        return lineHashes;
+    }
+
+    /**
+     * Hashes each line of a file, ignoring its whitespace so that reformatting does not change the fingerprints.
+     */
+    private long[] readLineHashes(File file) {
+        if (!file.isFile()) {
+            return NO_LINES;
+        }
+        long[] hashes = new long[256];
+        int count = 0;
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), charset));
+            String content;
+            while ((content = reader.readLine()) != null) {
+                long hash = Fnv1aHash.OFFSET_BASIS;
+                for (int i = 0; i < content.length(); i++) {
+                    char c = content.charAt(i);
+                    if (!Character.isWhitespace(c)) {
+                        hash = Fnv1aHash.hash(hash, c);
+                    }
+                }
+                if (count == hashes.length) {
+                    long[] grown = new long[count * 2];
+                    System.arraycopy(hashes, 0, grown, 0, count);
+                    hashes = grown;
+                }
+                hashes[count++] = hash;
+            }
+        } catch (IOException e) {
+            LOG.debug("Unable to read " + file + ": " + e.getMessage());
+            return NO_LINES;
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+        long[] result = new long[count];
+        System.arraycopy(hashes, 0, result, 0, count);
+        return result;
+    }
+
+}
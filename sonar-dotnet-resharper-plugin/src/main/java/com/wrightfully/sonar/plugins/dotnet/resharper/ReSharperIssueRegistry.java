@@ -0,0 +1,70 @@
+/*
+ * Sonar .NET Plugin :: ReSharper
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.plugins.dotnet.resharper;
+
+import com.wrightfully.sonar.dotnet.tools.resharper.Fnv1aHash;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.InstantiationStrategy;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Issues saved by the analyses of all the modules, when sonar.resharper.includeAllFiles reports the issues of files that do
+ * not belong to the analyzed project. The report block of every project that compiles a linked file holds its issues: the
+ * issues of the files owned by a project analyzed in the batch are left to the module of that project, and the registry
+ * makes sure the first module to meet an issue of any other file is the only one to save it.
+ */
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class ReSharperIssueRegistry implements BatchExtension {
+
+    private final Set<Long> savedIssues = new HashSet<Long>();
+
+    /**
+     * Records an issue about to be saved.
+     *
+     * @param fingerprint
+     *          the fingerprint of the issue, see {@link #fingerprint(String, File, String, String)}
+     * @return false if the issue was already saved by another module
+     */
+    public synchronized boolean register(long fingerprint) {
+        return savedIssues.add(fingerprint);
+    }
+
+    /**
+     * Returns a 64-bit FNV-1a hash identifying an issue regardless of the module reporting it.
+     */
+    public static long fingerprint(String typeId, File file, String line, String message) {
+        return fingerprint(typeId, VisualStudioFileIndex.normalize(file), line, message);
+    }
+
+    /**
+     * Same as {@link #fingerprint(String, File, String, String)}, for a path already normalized by the
+     * {@link VisualStudioFileIndex}.
+     */
+    static long fingerprint(String typeId, String normalizedPath, String line, String message) {
+        long hash = Fnv1aHash.hash(Fnv1aHash.OFFSET_BASIS, typeId);
+        hash = Fnv1aHash.hash(hash, normalizedPath);
+        hash = Fnv1aHash.hash(hash, line);
+        return Fnv1aHash.hash(hash, message);
+    }
+
+}
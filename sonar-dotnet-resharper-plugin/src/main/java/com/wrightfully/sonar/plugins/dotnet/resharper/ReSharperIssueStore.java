@@ -0,0 +1,214 @@
+/*
+ * Sonar .NET Plugin :: ReSharper
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.plugins.dotnet.resharper;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Issues of the files of a module saved by the previous analysis, kept in the working directory of the module so that they
+ * are carried over instead of being processed again. They are only valid for the same inputs: the validity key covers the
+ * content of the files of the project and of the projects it references, the inspection settings and the Sonar settings
+ * the saved issues depend on, and the types key the IssueTypes of the report and the version of inspectcode.
+ */
+final class ReSharperIssueStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReSharperIssueStore.class);
+
+    static final String FILENAME = "resharper-issues.bin";
+    private static final int MAGIC = 0x52534953;
+    private static final int FORMAT_VERSION = 2;
+    private static final int NO_LINE = -1;
+
+    /**
+     * A violation as it was saved: on the resource of its file, or on the project when its file or line could not be
+     * resolved.
+     */
+    static final class StoredIssue {
+        private final String path;
+        private final String typeId;
+        private final int line;
+        private final String message;
+        private final int outcome;
+
+        StoredIssue(String path, String typeId, int line, String message, int outcome) {
+            this.path = path;
+            this.typeId = typeId;
+            this.line = line;
+            this.message = message;
+            this.outcome = outcome;
+        }
+
+        /**
+         * @return the File attribute of the issue in the report
+         */
+        String getPath() {
+            return path;
+        }
+
+        String getTypeId() {
+            return typeId;
+        }
+
+        /**
+         * @return the line of the violation, null for the violations on a whole file or on the project
+         */
+        Integer getLine() {
+            return line == NO_LINE ? null : line;
+        }
+
+        String getMessage() {
+            return message;
+        }
+
+        /**
+         * @return how the violation was saved, as counted by {@link ReSharperResultParser}
+         */
+        int getOutcome() {
+            return outcome;
+        }
+    }
+
+    private final File file;
+    private final String validityKey;
+    private String typesKey;
+    private final List<StoredIssue> issues = new ArrayList<StoredIssue>();
+
+    private ReSharperIssueStore(File file, String validityKey) {
+        this.file = file;
+        this.validityKey = validityKey;
+    }
+
+    /**
+     * Loads the issues stored in the given directory, if they are still valid.
+     *
+     * @param workingDir
+     *          the directory the issues are stored into, or null to keep them in memory only
+     * @param validityKey
+     *          identifies the inputs the stored issues depend on
+     * @return the stored issues, empty if there are none or they were stored for other inputs
+     */
+    static ReSharperIssueStore load(File workingDir, String validityKey) {
+        ReSharperIssueStore store = new ReSharperIssueStore(workingDir == null ? null : new File(workingDir, FILENAME), validityKey);
+        if (store.file == null || !store.file.isFile()) {
+            return store;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(store.file)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !validityKey.equals(in.readUTF())) {
+                LOG.debug("The stored ReSharper issues were saved for other inputs");
+                return store;
+            }
+            store.typesKey = in.readUTF();
+            int issueCount = in.readInt();
+            for (int i = 0; i < issueCount; i++) {
+                store.issues.add(new StoredIssue(in.readUTF(), in.readUTF(), in.readInt(), in.readUTF(), in.readByte()));
+            }
+        } catch (IOException e) {
+            LOG.debug("Unable to read " + store.file + ": " + e.getMessage());
+            store.typesKey = null;
+            store.issues.clear();
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        return store;
+    }
+
+    /**
+     * @return an empty store for the same inputs, saved to the same file as this one
+     */
+    ReSharperIssueStore newStore() {
+        return new ReSharperIssueStore(file, validityKey);
+    }
+
+    /**
+     * Tells if the stored issues can replace the ones of a report.
+     *
+     * @param reportTypesKey
+     *          the types key of the report
+     * @return true if issues were stored from a report of the same types key
+     */
+    boolean isValidFor(String reportTypesKey) {
+        return typesKey != null && typesKey.equals(reportTypesKey);
+    }
+
+    void setTypesKey(String typesKey) {
+        this.typesKey = typesKey;
+    }
+
+    List<StoredIssue> getIssues() {
+        return Collections.unmodifiableList(issues);
+    }
+
+    void addIssue(String path, String typeId, Integer line, String message, int outcome) {
+        issues.add(new StoredIssue(path, typeId, line == null ? NO_LINE : line, message, outcome));
+    }
+
+    /**
+     * Stores the issues for the next analysis. Failures are logged only: the next analysis then processes every issue.
+     */
+    void save() {
+        if (file == null || typesKey == null) {
+            return;
+        }
+        DataOutputStream out = null;
+        boolean saved = false;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(validityKey);
+            out.writeUTF(typesKey);
+            out.writeInt(issues.size());
+            for (StoredIssue issue : issues) {
+                out.writeUTF(issue.path);
+                out.writeUTF(issue.typeId);
+                out.writeInt(issue.line);
+                out.writeUTF(issue.message);
+                out.writeByte(issue.outcome);
+            }
+            out.flush();
+            saved = true;
+        } catch (IOException e) {
+            LOG.debug("Unable to write " + file + ": " + e.getMessage());
+        } finally {
+            IOUtils.closeQuietly(out);
+            if (!saved) {
+                // e.g. a message too long to be written: no partial store
+                file.delete();
+            }
+        }
+    }
+
+}
@@ -42,7 +42,7 @@ import java.util.List;
         @Property(key = ReSharperConstants.INSTALL_DIR_KEY, defaultValue = ReSharperConstants.INSTALL_DIR_DEFVALUE, name = "ReSharper Command Line Tools install directory",
                 description = "Absolute path of the ReSharper Command Line Tools installation folder.", global = true, project = false),
         @Property(key = ReSharperConstants.DOTSETTINGS_FILE_PATH, defaultValue = "", name = "ReSharper dotSettings file",
-                description = "Absolute path of the ReSharper dotSettings file to use during in-process analysis.", global = false, project = false),
+                description = "Absolute path of the ReSharper dotSettings file to use during in-process analysis. When empty, a dotSettings file is generated from the shared settings of the solution (the .sln.DotSettings file), with the inspections that are not active in the quality profile disabled.", global = false, project = false),
         @Property(key = ReSharperConstants.ADDITIONAL_CMD_ARGS, defaultValue = "", name = "Additional ReSharper commandline arguments",
                 description = "Additional commandline arguments to use during in-process analysis.", global = false, project = false),
         @Property(key = ReSharperConstants.TIMEOUT_MINUTES_KEY, defaultValue = ReSharperConstants.TIMEOUT_MINUTES_DEFVALUE + "",
@@ -50,7 +50,21 @@ import java.util.List;
                 project = true, type = PropertyType.INTEGER),
         @Property(key = ReSharperConstants.INCLUDE_ALL_FILES, defaultValue = "true",
                 name = "ReSharper file inclusion mode", description = "Determines if violations are reported on any file (ignores filters and unsupported file types) or only those supported by the dotNet core plugin.", global = false,
-                project = false, type = PropertyType.BOOLEAN)
+                project = false, type = PropertyType.BOOLEAN),
+        @Property(key = ReSharperConstants.SOLUTION_WIDE_ANALYSIS_KEY, defaultValue = ReSharperConstants.SOLUTION_WIDE_ANALYSIS_AUTO,
+                name = "ReSharper solution-wide analysis", description = "Possible values : 'auto' (only run the solution-wide analysis when a '*.Global' rule is active), 'always' and 'never'.",
+                global = true, project = true, type = PropertyType.SINGLE_SELECT_LIST,
+                options = {ReSharperConstants.SOLUTION_WIDE_ANALYSIS_AUTO, ReSharperConstants.SOLUTION_WIDE_ANALYSIS_ALWAYS, ReSharperConstants.SOLUTION_WIDE_ANALYSIS_NEVER}),
+        @Property(key = ReSharperConstants.CHANGED_FILES_ONLY_KEY, defaultValue = "false",
+                name = "ReSharper changed files only", description = "Only inspects again the projects whose files, or the files of the projects they depend on, changed since the previous ReSharper execution. The issues of the other projects are taken from the previous report.", global = true,
+                project = true, type = PropertyType.BOOLEAN),
+        @Property(key = ReSharperConstants.ISSUE_BASELINE_PATH_KEY, defaultValue = "", name = "ReSharper issue baseline file",
+                description = "Path of a baseline file generated by ReSharperIssueBaseline from a previous report. The issues already known at the baseline are not reported. "
+                        + "This can be an absolute path, or a path relative to each project base directory.", global = false, project = true),
+        @Property(key = ReSharperConstants.INCREMENTAL_KEY, defaultValue = "false", name = "ReSharper incremental analysis",
+                description = "If true, the issues of a project whose files, referenced projects and settings are unchanged since the previous analysis are carried over "
+                        + "instead of being read again from the report. The issues of the solution-wide inspections are always read from the report.",
+                global = true, project = true, type = PropertyType.BOOLEAN)
 })
 public class ReSharperPlugin extends SonarPlugin {
 
@@ -77,6 +91,8 @@ public class ReSharperPlugin extends SonarPlugin {
         list.add(ReSharperSonarWayProfileVbNet.class);
 
         // Running ReSharper
+        list.add(VisualStudioFileIndex.class);
+        list.add(ReSharperIssueRegistry.class);
         list.add(ReSharperResultParser.class);
 
         return list;
@@ -20,7 +20,13 @@
 
 package com.wrightfully.sonar.plugins.dotnet.resharper;
 
+import com.wrightfully.sonar.dotnet.tools.resharper.FileHashManifest;
+import com.wrightfully.sonar.dotnet.tools.resharper.Fnv1aHash;
+import com.wrightfully.sonar.dotnet.tools.resharper.VisualStudioProjectReferences;
+import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperRule;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.codehaus.staxmate.SMInputFactory;
 import org.codehaus.staxmate.in.SMHierarchicCursor;
 import org.codehaus.staxmate.in.SMInputCursor;
@@ -34,18 +40,27 @@ import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.rules.RuleQuery;
 import org.sonar.api.rules.Violation;
 import org.sonar.api.utils.SonarException;
+import org.sonar.api.utils.WildcardPattern;
 import org.sonar.plugins.dotnet.api.microsoft.MicrosoftWindowsEnvironment;
+import org.sonar.plugins.dotnet.api.microsoft.SourceFile;
 import org.sonar.plugins.dotnet.api.microsoft.VisualStudioProject;
 import org.sonar.plugins.dotnet.api.microsoft.VisualStudioSolution;
+import org.sonar.plugins.dotnet.api.utils.FileFinder;
 import org.sonar.plugins.dotnet.api.utils.StaxParserUtils;
 
 import javax.xml.stream.XMLStreamException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -57,12 +72,98 @@ public class ReSharperResultParser implements BatchExtension {
     private static final Logger LOG = LoggerFactory.getLogger(ReSharperResultParser.class);
 
     private final VisualStudioSolution vsSolution;
+    private final VisualStudioFileIndex fileIndex;
+    private final ReSharperIssueRegistry issueRegistry;
+    private int otherModuleIssueCount;
+
+    /**
+     * VS projects analyzed by a module of the batch, the only ones that can take over the issues of their files
+     */
+    private Set<VisualStudioProject> analyzedProjects;
+    private static final List<String> ANALYZED_LANGUAGES = Arrays.asList("cs", "vbnet");
+
+    /**
+     * Number of violations saved per outcome of the resolution of their file and line
+     */
+    private final int[] outcomeCounts = new int[3];
+    private static final int SAVED_ON_FILE = 0;
+    private static final int SAVED_ON_PROJECT_UNRESOLVED_FILE = 1;
+    private static final int SAVED_ON_PROJECT_INVALID_LINE = 2;
     private VisualStudioProject vsProject;
     private Project project;
     private SensorContext context;
     private RuleFinder ruleFinder;
     private String repositoryKey;
     private Boolean includeAllFiles;
+    private String issueBaselinePath;
+
+    /**
+     * Issues known at the baseline, not reported again; null when no baseline is configured
+     */
+    private ReSharperIssueBaseline issueBaseline;
+    private ReSharperIssueBaseline.Occurrences baselineOccurrences;
+    private ReSharperIssueFingerprinter fingerprinter;
+    private int baselineIssueCount;
+    private File issueBaselineFile;
+
+    /**
+     * Issues of the previous analysis, carried over when none of their inputs changed; null unless incremental
+     */
+    private ReSharperIssueStore previousIssues;
+    private ReSharperIssueStore currentIssues;
+    private boolean carryOver;
+    private boolean incremental;
+    private String incrementalSettingsKey;
+    private String dotSettingsPath;
+
+    /**
+     * Rules by IssueType id, null for the types without rule: each type is looked up once per analysis
+     */
+    private final Map<String, Rule> rulesByTypeId = new HashMap<String, Rule>();
+    private ReSharperUnknownIssueTypes unknownIssueTypes;
+
+    /**
+     * Sonar exclusion patterns of the project, compiled once per analysis
+     */
+    private WildcardPattern[] exclusionPatterns;
+    private List<String> sourceDirPaths;
+    private final StringBuilder messageBuilder = new StringBuilder(256);
+
+    /**
+     * Boxed line numbers by line, shared by the violations as Violation#setLineId takes an Integer
+     */
+    private Integer[] lineIds = new Integer[1024];
+    private static final int MAX_CACHED_LINE_ID = 65536;
+
+    /**
+     * Files of the report by path attribute, so that each file is resolved and checked for exclusion once
+     */
+    private final Map<String, ReportedFile> filesByPath = new HashMap<String, ReportedFile>();
+
+    private static final class ReportedFile {
+        private final File sourceFile;
+        private final org.sonar.api.resources.File sonarFile;
+        private final boolean excluded;
+        private final boolean inProject;
+        private final VisualStudioProject analyzedOwner;
+        private final String normalizedPath;
+
+        ReportedFile(File sourceFile, org.sonar.api.resources.File sonarFile, boolean excluded, boolean inProject,
+                VisualStudioProject analyzedOwner) {
+            this.sourceFile = sourceFile;
+            this.sonarFile = sonarFile;
+            this.excluded = excluded;
+            this.inProject = inProject;
+            this.analyzedOwner = analyzedOwner;
+            // only needed to tell the issues of the files reported by several modules apart
+            this.normalizedPath = excluded || inProject || analyzedOwner != null ? null : VisualStudioFileIndex.normalize(sourceFile);
+        }
+    }
+
+    /**
+     * Rules of the repository by config key, loaded with a single query before the first report is parsed
+     */
+    private Map<String, Rule> repositoryRulesByConfigKey;
 
     private final static String issuesLink = "https://jira.codehaus.org/browse/SONARPLUGINS/component/16153";
     private final static String missingIssueTypesRuleKey = "ReSharperInspectCode#Sonar.UnknownIssueType";
@@ -71,8 +172,26 @@ public class ReSharperResultParser implements BatchExtension {
      * Constructs a @link{ReSharperResultParser}.
      */
     public ReSharperResultParser(MicrosoftWindowsEnvironment env, Project project, SensorContext context, RuleFinder ruleFinder, ReSharperConfiguration configuration) {
+        this(env, project, context, ruleFinder, configuration, new VisualStudioFileIndex(env));
+    }
+
+    /**
+     * Constructs a @link{ReSharperResultParser} sharing the file index of the batch.
+     */
+    public ReSharperResultParser(MicrosoftWindowsEnvironment env, Project project, SensorContext context, RuleFinder ruleFinder, ReSharperConfiguration configuration,
+            VisualStudioFileIndex fileIndex) {
+        this(env, project, context, ruleFinder, configuration, fileIndex, new ReSharperIssueRegistry());
+    }
+
+    /**
+     * Constructs a @link{ReSharperResultParser} sharing the file index and the issue registry of the batch.
+     */
+    public ReSharperResultParser(MicrosoftWindowsEnvironment env, Project project, SensorContext context, RuleFinder ruleFinder, ReSharperConfiguration configuration,
+            VisualStudioFileIndex fileIndex, ReSharperIssueRegistry issueRegistry) {
         super();
 
+        this.fileIndex = fileIndex;
+        this.issueRegistry = issueRegistry;
         this.vsSolution = env.getCurrentSolution();
         if (vsSolution == null) {
             // not a .NET project
@@ -89,6 +208,18 @@ public class ReSharperResultParser implements BatchExtension {
         repositoryKey = ReSharperConstants.REPOSITORY_KEY + "-" + projLanguage;
 
         includeAllFiles = configuration.getBoolean(ReSharperConstants.INCLUDE_ALL_FILES);
+        issueBaselinePath = configuration.getString(ReSharperConstants.ISSUE_BASELINE_PATH_KEY);
+        incremental = configuration.getBoolean(ReSharperConstants.INCREMENTAL_KEY);
+        dotSettingsPath = configuration.getString(ReSharperConstants.DOTSETTINGS_FILE_PATH);
+        String[] exclusions = project.getExclusionPatterns();
+        // the stored issues depend on the filtering settings and on the inspectcode settings
+        incrementalSettingsKey = includeAllFiles + ":" + StringUtils.join(exclusions, ',') + ":" + StringUtils.defaultString(dotSettingsPath) + ":"
+            + StringUtils.defaultString(configuration.getString(ReSharperConstants.ADDITIONAL_CMD_ARGS));
+        exclusionPatterns = new WildcardPattern[exclusions == null ? 0 : exclusions.length];
+        for (int i = 0; i < exclusionPatterns.length; i++) {
+            // the directory separator org.sonar.api.resources.File#matchFilePattern uses
+            exclusionPatterns[i] = WildcardPattern.create(exclusions[i], "/");
+        }
     }
 
     /**
@@ -99,12 +230,34 @@ public class ReSharperResultParser implements BatchExtension {
      */
     public void parse(File file) {
 
+        if (unknownIssueTypes == null) {
+            loadRepositoryRules();
+            // keyed by the rules the server registered rather than by the settings: custom rules only register on restart
+            String validityKey = repositoryKey + ":" + Long.toHexString(fingerprint(repositoryRulesByConfigKey.keySet()));
+            unknownIssueTypes = ReSharperUnknownIssueTypes.load(project.getFileSystem().getSonarWorkingDirectory(), validityKey);
+            loadIssueBaseline();
+            if (incremental) {
+                loadIssueStore(validityKey);
+            }
+        }
+        if (previousIssues != null) {
+            currentIssues = previousIssues.newStore();
+            carryOver = false;
+        }
+
+        if (issueBaseline != null) {
+            // every parsed report is matched against the whole baseline
+            baselineOccurrences = issueBaseline.newOccurrences();
+        }
+
         SMInputFactory inputFactory = StaxParserUtils.initStax();
         FileInputStream fileInputStream = null;
         try {
             fileInputStream = new FileInputStream(file);
             SMHierarchicCursor cursor = inputFactory.rootElementCursor(new InputStreamReader(fileInputStream, project.getFileSystem().getSourceCharset()));
-            SMInputCursor mainCursor = cursor.advance().childElementCursor();
+            cursor.advance();
+            String toolsVersion = cursor.getAttrValue("ToolsVersion");
+            SMInputCursor mainCursor = cursor.childElementCursor();
 
             MissingIssueTypeHelper missingTypesHelper = new MissingIssueTypeHelper();
 
@@ -116,12 +269,32 @@ public class ReSharperResultParser implements BatchExtension {
                     parseIssuesBloc(mainCursor, missingTypesHelper);
                 } else if (nodeName.equals("IssueTypes")) {
                     missingTypesHelper.setIssueTypes(mainCursor);
+                    // inspectcode writes the types before the issues: resolve them all at once
+                    resolveRules(missingTypesHelper.getIssueTypeIds());
+                    if (currentIssues != null) {
+                        checkStoredIssues(toolsVersion, missingTypesHelper.getIssueTypeIds());
+                    }
                 }
             }
 
             if (missingTypesHelper.hasMissingIssues())
             {
                 missingTypesHelper.logMissingIssues();
+                LOG.warn("Issues without rule in the ReSharper rule repository, by IssueType: " + unknownIssueTypes.getOccurrences());
+            }
+            unknownIssueTypes.save();
+            if (currentIssues != null) {
+                carryOverIssues();
+                currentIssues.save();
+            }
+            logOutcomes();
+            if (otherModuleIssueCount > 0) {
+                LOG.info("Skipped " + otherModuleIssueCount + " ReSharper issues of files reported by other modules");
+                otherModuleIssueCount = 0;
+            }
+            if (baselineIssueCount > 0) {
+                LOG.info("Skipped " + baselineIssueCount + " ReSharper issues known at the baseline");
+                baselineIssueCount = 0;
             }
 
             cursor.getStreamReader().closeCompletely();
@@ -134,6 +307,120 @@ public class ReSharperResultParser implements BatchExtension {
         }
     }
 
+    private void loadIssueBaseline() {
+        if (StringUtils.isBlank(issueBaselinePath)) {
+            return;
+        }
+        File baselineFile = new File(issueBaselinePath);
+        if (!baselineFile.isAbsolute()) {
+            baselineFile = project.getFileSystem().resolvePath(issueBaselinePath);
+        }
+        try {
+            issueBaseline = ReSharperIssueBaseline.load(baselineFile);
+            issueBaselineFile = baselineFile;
+            fingerprinter = new ReSharperIssueFingerprinter(vsSolution.getSolutionDir(), project.getFileSystem().getSourceCharset());
+            LOG.info("Using the ReSharper issue baseline " + baselineFile + " of " + issueBaseline.size() + " issues");
+        } catch (IOException e) {
+            LOG.warn("Unable to load the ReSharper issue baseline, all the issues will be reported: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the issues stored by the previous analysis. They are only valid if nothing they depend on changed since: the rules,
+     * the filtering settings, the baseline, the inspectcode settings and the content of the files of the project and of the
+     * projects it references, which the local inspections read to resolve symbols.
+     */
+    private void loadIssueStore(String rulesKey) {
+        FileHashManifest inputs;
+        try {
+            inputs = FileHashManifest.compute(vsSolution.getSolutionDir(), findInspectionInputs());
+        } catch (IOException e) {
+            LOG.warn("Unable to hash the files of " + vsProject.getName() + ", all the ReSharper issues will be processed: " + e.getMessage());
+            return;
+        }
+        String storeValidityKey = rulesKey + ":" + incrementalSettingsKey + ":"
+            + (issueBaselineFile == null ? "" : issueBaselineFile.getAbsolutePath() + "@" + issueBaselineFile.lastModified()) + ":" + inputs.digest();
+        previousIssues = ReSharperIssueStore.load(project.getFileSystem().getSonarWorkingDirectory(), storeValidityKey);
+    }
+
+    /**
+     * @return the existing files inspectcode reads to inspect the current project: its files, the files of the projects it
+     *         references, directly or not, and the dotSettings files
+     */
+    private List<File> findInspectionInputs() throws IOException {
+        List<File> files = new ArrayList<File>();
+        for (VisualStudioProject inspectedProject : VisualStudioProjectReferences.read(vsSolution, Collections.singleton(vsProject)).keySet()) {
+            for (SourceFile sourceFile : inspectedProject.getSourceFiles()) {
+                files.add(sourceFile.getFile());
+            }
+            if (inspectedProject.getProjectFile() != null) {
+                files.add(inspectedProject.getProjectFile());
+            }
+        }
+        if (StringUtils.isNotBlank(dotSettingsPath)) {
+            files.addAll(FileFinder.findFiles(vsSolution, vsProject, dotSettingsPath));
+        } else if (project.getFileSystem().getSonarWorkingDirectory() != null) {
+            // generated from the profile, and extending the shared settings of the solution
+            files.add(new File(project.getFileSystem().getSonarWorkingDirectory(), ReSharperConstants.PROFILE_DOTSETTINGS_FILENAME));
+        }
+        if (vsSolution.getSolutionFile() != null) {
+            files.add(new File(vsSolution.getSolutionFile().getPath() + ".DotSettings"));
+        }
+        // a missing file is not hashed, which still changes the digest when it is created or deleted
+        List<File> existingFiles = new ArrayList<File>();
+        for (File file : files) {
+            if (file.isFile()) {
+                existingFiles.add(file);
+            }
+        }
+        return existingFiles;
+    }
+
+    /**
+     * The stored issues can only be carried over if they were read from a report of the same inspectcode version, declaring
+     * the same IssueTypes: other types mean that inspections were enabled or disabled.
+     */
+    private void checkStoredIssues(String toolsVersion, Collection<String> typeIds) {
+        String typesKey = StringUtils.defaultString(toolsVersion) + ":" + Long.toHexString(fingerprint(typeIds));
+        carryOver = previousIssues.isValidFor(typesKey);
+        if (carryOver) {
+            // the same issues again, for the next analysis
+            currentIssues = previousIssues;
+        } else {
+            currentIssues.setTypesKey(typesKey);
+        }
+    }
+
+    /**
+     * Saves the stored issues of the files of the project, skipped while reading the report. The issues of solution-wide
+     * inspections depend on other projects: they are never stored, and always read from the report.
+     */
+    private void carryOverIssues() {
+        if (!carryOver) {
+            return;
+        }
+        int issueCount = 0;
+        for (ReSharperIssueStore.StoredIssue issue : previousIssues.getIssues()) {
+            Rule rule = findRule(issue.getTypeId());
+            if (rule == null) {
+                continue;
+            }
+            ReportedFile reportedFile = resolveFile(issue.getPath());
+            Violation violation;
+            if (issue.getOutcome() == SAVED_ON_FILE && reportedFile.sonarFile != null) {
+                violation = Violation.create(rule, reportedFile.sonarFile);
+                violation.setLineId(issue.getLine());
+            } else {
+                violation = Violation.create(rule, project);
+            }
+            violation.setMessage(issue.getMessage());
+            outcomeCounts[issue.getOutcome()]++;
+            context.saveViolation(violation);
+            issueCount++;
+        }
+        LOG.info("Carried over " + issueCount + " ReSharper issues of " + vsProject.getName() + ", unchanged since the previous analysis");
+    }
+
     private class MissingIssueTypeHelper {
 
         private final Set<String> _missingIssueTypes;
@@ -169,6 +456,10 @@ public class ReSharperResultParser implements BatchExtension {
 
         }
 
+        public Set<String> getIssueTypeIds() {
+            return _issueTypeCache.keySet();
+        }
+
         public void addMissingIssueType(String issueTypeName){
             _missingIssueTypes.add(issueTypeName);
         }
@@ -223,7 +514,9 @@ public class ReSharperResultParser implements BatchExtension {
             if (projectName.equals(thisName))  {
                 parseProjectBloc(projectsCursor, missingTypesHelper);
             } else {
-                LOG.debug("Skipping project block due to name mismatch.  Currently analyzing '" + thisName +"', processing '" + projectName + "'");
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Skipping project block due to name mismatch.  Currently analyzing '" + thisName +"', processing '" + projectName + "'");
+                }
             }
         }
     }
@@ -235,96 +528,332 @@ public class ReSharperResultParser implements BatchExtension {
         while (issuesCursor.getNext() != null) {
 
             String typeId = issuesCursor.getAttrValue("TypeId");
-            String configRuleKey = "ReSharperInspectCode#" + typeId;
-
-            LOG.debug("Searching for rule '"+configRuleKey+"' in repository '" + repositoryKey +"'");
-            Rule currentRule = ruleFinder.find(RuleQuery.create().withRepositoryKey(repositoryKey).withConfigKey(configRuleKey));
+            Rule currentRule = findRule(typeId);
             if (currentRule != null) {
-                LOG.debug("Rule found: " + configRuleKey);
-                createViolation(issuesCursor, currentRule);
+                createViolation(issuesCursor, typeId, currentRule);
             } else {
-                LOG.warn("Could not find the following rule in the ReSharper rule repository: " + configRuleKey);
+                if (unknownIssueTypes.addOccurrence(typeId)) {
+                    LOG.warn("Could not find the following rule in the ReSharper rule repository: ReSharperInspectCode#" + typeId);
+                }
                 missingTypesHelper.addMissingIssueType(typeId);
             }
         }
     }
 
+    /**
+     * Resolves the rules of the given types with a single query of the repository, rather than one query per type.
+     */
+    private void resolveRules(Collection<String> typeIds) {
+        List<String> unresolvedTypeIds = new ArrayList<String>();
+        for (String typeId : typeIds) {
+            if (rulesByTypeId.containsKey(typeId)) {
+                continue;
+            }
+            if (unknownIssueTypes.isKnownToBeUnknown(typeId)) {
+                rulesByTypeId.put(typeId, null);
+            } else {
+                unresolvedTypeIds.add(typeId);
+            }
+        }
+        for (String typeId : unresolvedTypeIds) {
+            Rule rule = repositoryRulesByConfigKey.get("ReSharperInspectCode#" + typeId);
+            rulesByTypeId.put(typeId, rule);
+            if (rule == null) {
+                unknownIssueTypes.addType(typeId);
+            }
+        }
+    }
 
-    private void createViolation(SMInputCursor violationsCursor, Rule currentRule) throws XMLStreamException {
-        String relativeFilePath = violationsCursor.getAttrValue("File");
+    private void loadRepositoryRules() {
+        repositoryRulesByConfigKey = new HashMap<String, Rule>();
+        for (Rule rule : ruleFinder.findAll(RuleQuery.create().withRepositoryKey(repositoryKey))) {
+            repositoryRulesByConfigKey.put(rule.getConfigKey(), rule);
+        }
+        LOG.debug("Loaded " + repositoryRulesByConfigKey.size() + " rules of repository '" + repositoryKey + "'");
+    }
 
-        //Paths in the resharper results file are relative to the Solution file
-        LOG.debug("createViolation for relativePath: " + relativeFilePath);
-        File sourceFile = new File(vsSolution.getSolutionDir(), relativeFilePath);
+    /**
+     * @return a hash of the given config keys that does not depend on their order
+     */
+    static long fingerprint(Collection<String> configKeys) {
+        long result = 0;
+        for (String configKey : configKeys) {
+            result += Fnv1aHash.hash(Fnv1aHash.OFFSET_BASIS, configKey);
+        }
+        return result;
+    }
+
+    private Rule findRule(String typeId) {
+        Rule knownRule = rulesByTypeId.get(typeId);
+        if (knownRule != null || rulesByTypeId.containsKey(typeId)) {
+            return knownRule;
+        }
+        Rule rule = null;
+        if (!unknownIssueTypes.isKnownToBeUnknown(typeId)) {
+            String configRuleKey = "ReSharperInspectCode#" + typeId;
+            LOG.debug("Searching for rule '"+configRuleKey+"' in repository '" + repositoryKey +"'");
+            rule = ruleFinder.find(RuleQuery.create().withRepositoryKey(repositoryKey).withConfigKey(configRuleKey));
+        }
+        rulesByTypeId.put(typeId, rule);
+        return rule;
+    }
 
-        final org.sonar.api.resources.File sonarFile = org.sonar.api.resources.File.fromIOFile(sourceFile, project);
 
-        try{
-            LOG.debug("searching for sourceFile " + sourceFile.getCanonicalFile().getPath() + " - Exists: " + sourceFile.exists());
-        } catch (Exception ex) {
-            LOG.warn("Exception: " + ex.getMessage());
+    private void createViolation(SMInputCursor violationsCursor, String typeId, Rule currentRule) throws XMLStreamException {
+        String relativeFilePath = violationsCursor.getAttrValue("File");
+        ReportedFile reportedFile = resolveFile(relativeFilePath);
+        File sourceFile = reportedFile.sourceFile;
+
+        if (reportedFile.excluded) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("File is marked as excluded, so not reporting violation: {}", sourceFile.getName());
+            }
+            return;
+        }
+        boolean inProject = reportedFile.inProject;
+        if (includeAllFiles || inProject) {
+            // the issues of the local inspections of the project files are stored, and carried over when nothing changed
+            boolean storable = currentIssues != null && inProject && !ReSharperRule.requiresSolutionWideAnalysis(typeId);
+            if (storable && carryOver) {
+                return;
+            }
+            String lineNumber = violationsCursor.getAttrValue("Line");
+            String message = StringUtils.defaultString(violationsCursor.getAttrValue("Message"));
+            if (!inProject && !isReportedByThisModule(typeId, reportedFile, lineNumber, message)) {
+                otherModuleIssueCount++;
+                return;
+            }
+            int line = parseLine(lineNumber);
+            // no other issue can match once every issue of the baseline was matched
+            if (baselineOccurrences != null && !baselineOccurrences.isExhausted()
+                && baselineOccurrences.match(fingerprinter.fingerprint(typeId, relativeFilePath, message, line))) {
+                baselineIssueCount++;
+                return;
+            }
+            Violation violation;
+            int outcome;
+            if (reportedFile.sonarFile == null) {
+                outcome = SAVED_ON_PROJECT_UNRESOLVED_FILE;
+                violation = createViolationAgainstProject(currentRule, sourceFile, message, lineNumber);
+            } else if (lineNumber != null && line < 0) {
+                LOG.debug("Invalid line '{}' of a violation of {}, associating it to the VS project", lineNumber, sourceFile.getPath());
+                outcome = SAVED_ON_PROJECT_INVALID_LINE;
+                violation = createViolationAgainstProject(currentRule, sourceFile, message, lineNumber);
+            } else {
+                outcome = SAVED_ON_FILE;
+                violation = createViolationAgainstFile(currentRule, reportedFile, message, lineNumber, line);
+            }
+            outcomeCounts[outcome]++;
+            context.saveViolation(violation);
+            if (storable) {
+                currentIssues.addIssue(relativeFilePath, typeId, violation.getLineId(), violation.getMessage(), outcome);
+            }
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug("Violation not being saved for unsupported file {}", sourceFile.getName());
         }
 
-        if (context.isExcluded(sonarFile)) {
-            LOG.debug("File is marked as excluded, so not reporting violation: {}", sonarFile.getName());
-        } else if (includeAllFiles || vsProject.contains(sourceFile)) {
-            try {
-                Violation violation = createViolationAgainstFile(violationsCursor, currentRule, sourceFile);
-                context.saveViolation(violation);
-            } catch (Exception ex){
-                LOG.warn("Violation could not be saved against file, associating to VS project instead: " + sourceFile.getPath());
+    }
 
-                Violation violation = createViolationAgainstProject(violationsCursor, currentRule, sourceFile);
-                context.saveViolation(violation);
+    /**
+     * @return the line number, -1 if missing or not a valid number
+     */
+    private static int parseLine(String lineNumber) {
+        if (lineNumber == null || lineNumber.length() == 0 || lineNumber.length() > 9) {
+            return -1;
+        }
+        int line = 0;
+        for (int i = 0; i < lineNumber.length(); i++) {
+            int digit = Character.digit(lineNumber.charAt(i), 10);
+            if (digit < 0) {
+                return -1;
+            }
+            line = line * 10 + digit;
+        }
+        return line;
+    }
+
+    /**
+     * @return the boxed line number, the same instance for all the violations of a line
+     */
+    private Integer toLineId(int line) {
+        if (line >= lineIds.length) {
+            if (line >= MAX_CACHED_LINE_ID) {
+                return Integer.valueOf(line);
             }
+            Integer[] grown = new Integer[Math.min(Math.max(line + 1, lineIds.length * 2), MAX_CACHED_LINE_ID)];
+            System.arraycopy(lineIds, 0, grown, 0, lineIds.length);
+            lineIds = grown;
+        }
+        Integer lineId = lineIds[line];
+        if (lineId == null) {
+            lineId = Integer.valueOf(line);
+            lineIds[line] = lineId;
+        }
+        return lineId;
+    }
+
+    private void logOutcomes() {
+        int onProject = outcomeCounts[SAVED_ON_PROJECT_UNRESOLVED_FILE] + outcomeCounts[SAVED_ON_PROJECT_INVALID_LINE];
+        String message = "ReSharper violations saved against files: " + outcomeCounts[SAVED_ON_FILE] + ", against the VS project: " + onProject
+            + " (files outside of the source directories: " + outcomeCounts[SAVED_ON_PROJECT_UNRESOLVED_FILE]
+            + ", invalid lines: " + outcomeCounts[SAVED_ON_PROJECT_INVALID_LINE] + ")";
+        if (onProject > 0) {
+            LOG.info(message);
         } else {
-            LOG.debug("Violation not being saved for unsupported file {}", sourceFile.getName());
+            LOG.debug(message);
         }
+        Arrays.fill(outcomeCounts, 0);
+    }
 
+    /**
+     * Tells if an issue of a file that is not part of the current project is to be saved by this module: the issues of the
+     * files owned by other analyzed projects are saved by their modules, the others by the first module to report them.
+     */
+    private boolean isReportedByThisModule(String typeId, ReportedFile reportedFile, String lineNumber, String message) {
+        if (reportedFile.analyzedOwner != null) {
+            LOG.debug("Violation of file {} left to its project {}", reportedFile.sourceFile.getName(), reportedFile.analyzedOwner.getName());
+            return false;
+        }
+        return issueRegistry.register(ReSharperIssueRegistry.fingerprint(typeId, reportedFile.normalizedPath, lineNumber, message));
     }
 
+    /**
+     * @return the first of the given projects that is analyzed by a module of the batch, null if none is: skipped modules,
+     *         test projects and projects left out of the build do not report the issues of their files
+     */
+    private VisualStudioProject findAnalyzedProject(List<VisualStudioProject> projects) {
+        if (projects.isEmpty()) {
+            return null;
+        }
+        if (analyzedProjects == null) {
+            analyzedProjects = new HashSet<VisualStudioProject>();
+            if (project.getRoot() != null) {
+                addAnalyzedProjects(project.getRoot());
+            }
+        }
+        for (VisualStudioProject candidate : projects) {
+            if (analyzedProjects.contains(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
 
-    private Violation createViolationAgainstFile(SMInputCursor violationsCursor, Rule currentRule, File sourceFile) throws Exception {
-        final org.sonar.api.resources.File sonarFile = org.sonar.api.resources.File.fromIOFile(sourceFile, project);
+    private void addAnalyzedProjects(Project module) {
+        VisualStudioProject moduleProject = vsSolution.getProjectFromSonarProject(module);
+        if (moduleProject != null && !moduleProject.isTest() && ANALYZED_LANGUAGES.contains(module.getLanguageKey())) {
+            analyzedProjects.add(moduleProject);
+        }
+        for (Project child : module.getModules()) {
+            addAnalyzedProjects(child);
+        }
+    }
 
-        Violation violation = Violation.create(currentRule, sonarFile);
+    /**
+     * Resolves a file of the report once: the files excluded by the project patterns are recognized from their path,
+     * without creating any Sonar resource.
+     */
+    private ReportedFile resolveFile(String relativeFilePath) {
+        ReportedFile reportedFile = filesByPath.get(relativeFilePath);
+        if (reportedFile != null) {
+            return reportedFile;
+        }
 
-        String message = violationsCursor.getAttrValue("Message");
+        //Paths in the resharper results file are relative to the Solution file
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("createViolation for relativePath: " + relativeFilePath);
+        }
+        File sourceFile = new File(vsSolution.getSolutionDir(), relativeFilePath);
 
-        String lineNumber = violationsCursor.getAttrValue("Line");
-        if (lineNumber != null) {
-            violation.setLineId(Integer.parseInt(lineNumber));
+        if (isExcludedByPattern(sourceFile)) {
+            reportedFile = new ReportedFile(sourceFile, null, true, false, null);
+        } else {
+            final org.sonar.api.resources.File sonarFile = org.sonar.api.resources.File.fromIOFile(sourceFile, project);
 
-            if (!vsProject.contains(sourceFile))
-            {
-                message += " (for file " + sonarFile.getName();
-                if (lineNumber != null) {
-                    message += " line " + lineNumber;
+            if (LOG.isDebugEnabled()) {
+                try {
+                    LOG.debug("searching for sourceFile " + sourceFile.getCanonicalFile().getPath() + " - Exists: " + sourceFile.exists());
+                } catch (IOException ex) {
+                    LOG.warn("Exception: " + ex.getMessage());
                 }
-                message +=  ")";
+            }
+
+            boolean excluded = context.isExcluded(sonarFile);
+            if (sonarFile == null && !excluded) {
+                LOG.warn("File outside of the source directories, its violations are associated to the VS project: " + sourceFile.getPath());
+            }
+            boolean inProject = !excluded && fileIndex.contains(vsProject, sourceFile);
+            VisualStudioProject analyzedOwner = excluded || inProject ? null : findAnalyzedProject(fileIndex.getProjects(sourceFile));
+            reportedFile = new ReportedFile(sourceFile, sonarFile, excluded, inProject, analyzedOwner);
+        }
+        filesByPath.put(relativeFilePath, reportedFile);
+        return reportedFile;
+    }
 
+    /**
+     * Matches the exclusion patterns of the project as Sonar does, against the key of the file resource: the path relative
+     * to the source directory, with '/' separators. The key is matched as a string, so that no resource is created for the
+     * files that turn out to be excluded.
+     */
+    private boolean isExcludedByPattern(File sourceFile) {
+        if (exclusionPatterns.length == 0) {
+            return false;
+        }
+        if (sourceDirPaths == null) {
+            sourceDirPaths = new ArrayList<String>();
+            for (File sourceDir : project.getFileSystem().getSourceDirs()) {
+                sourceDirPaths.add(FilenameUtils.separatorsToUnix(sourceDir.getAbsolutePath()) + "/");
+            }
+        }
+        String path = FilenameUtils.separatorsToUnix(sourceFile.getAbsolutePath());
+        for (String dirPath : sourceDirPaths) {
+            if (path.startsWith(dirPath)) {
+                // the key of the resource File.fromIOFile would build
+                if (WildcardPattern.match(exclusionPatterns, path.substring(dirPath.length()))) {
+                    return true;
+                }
             }
         }
+        return false;
+    }
 
 
+    private Violation createViolationAgainstFile(Rule currentRule, ReportedFile reportedFile, String message, String lineNumber, int line) {
+        Violation violation = Violation.create(currentRule, reportedFile.sonarFile);
+        if (lineNumber != null) {
+            violation.setLineId(toLineId(line));
+            if (!reportedFile.inProject) {
+                violation.setMessage(appendFileAndLine(message, reportedFile.sonarFile.getName(), lineNumber));
+                return violation;
+            }
+        }
         violation.setMessage(message.trim());
         return violation;
     }
 
-    private Violation createViolationAgainstProject(SMInputCursor violationsCursor, Rule currentRule, File sourceFile) throws XMLStreamException {
+    private Violation createViolationAgainstProject(Rule currentRule, File sourceFile, String message, String lineNumber) {
         Violation violation = Violation.create(currentRule, project);
-        String lineNumber = violationsCursor.getAttrValue("Line");
-
-        String message = violationsCursor.getAttrValue("Message");
+        violation.setMessage(appendFileAndLine(message, sourceFile.getName(), lineNumber));
+        return violation;
+    }
 
-        message += " (for file " + sourceFile.getName();
+    /**
+     * Builds "message (for file name line n)" in a buffer reused by all the violations: the only copy is the message the
+     * violation keeps.
+     */
+    private String appendFileAndLine(String message, String fileName, String lineNumber) {
+        messageBuilder.setLength(0);
+        // the suffix ends with ')', so only the start of the message may need trimming
+        int start = 0;
+        while (start < message.length() && message.charAt(start) <= ' ') {
+            start++;
+        }
+        messageBuilder.append(message, start, message.length()).append(" (for file ").append(fileName);
         if (lineNumber != null) {
-            message += " line " + lineNumber;
+            messageBuilder.append(" line ").append(lineNumber);
         }
-        message +=  ")";
-
-        violation.setMessage(message.trim());
-        return violation;
+        messageBuilder.append(')');
+        return messageBuilder.toString();
     }
 
 }
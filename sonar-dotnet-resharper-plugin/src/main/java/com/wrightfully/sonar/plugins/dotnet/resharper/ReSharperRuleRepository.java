@@ -19,8 +19,8 @@
  */
 package com.wrightfully.sonar.plugins.dotnet.resharper;
 
-import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperFileParser;
 import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperRule;
+import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperRuleCatalog;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,12 +28,12 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleRepository;
 
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Loads the ReSharper rules configuration file.
@@ -44,36 +44,45 @@ public class ReSharperRuleRepository extends RuleRepository {
     private static final Logger LOG = LoggerFactory.getLogger(ReSharperRuleRepository.class);
 
     private Settings settings;
+    private ReSharperCustomRules customRulesParser;
 
     public ReSharperRuleRepository(String repoKey, String languageKey, Settings settings) {
+        this(repoKey, languageKey, settings, new ReSharperCustomRules());
+    }
+
+    ReSharperRuleRepository(String repoKey, String languageKey, Settings settings, ReSharperCustomRules customRulesParser) {
         super(repoKey, languageKey);
         setName(ReSharperConstants.REPOSITORY_NAME);
         this.settings = settings;
+        this.customRulesParser = customRulesParser;
     }
 
     @Override
     public List<Rule> createRules() {
-        List<Rule> rules = new ArrayList<Rule>();
+        // rules by key, in registration order; converted once overrides are known, so that a replaced rule is never rendered
+        Map<String, ReSharperRule> rules = new LinkedHashMap<String, ReSharperRule>();
 
         // ReSharper rules
-        InputStream rulesFileStream = ReSharperRuleRepository.class.getResourceAsStream("/com/wrightfully/sonar/plugins/dotnet/resharper/rules/DefaultRules.ReSharper");
-        Reader reader = new InputStreamReader(rulesFileStream);
-        List<ReSharperRule> reSharperRules = ReSharperFileParser.parseRules(reader);
-        for(ReSharperRule rRule: reSharperRules) {
-            rules.add(rRule.toSonarRule());
+        for(ReSharperRule rRule: ReSharperRuleCatalog.getDefault().getRules()) {
+            rules.put(rRule.getKey(), rRule);
         }
 
         // Custom rules through the Web interface
         String customRules = settings.getString(ReSharperConstants.CUSTOM_RULES_PROP_KEY);
         if (StringUtils.isNotBlank(customRules)) {
             try {
-                String customRulesXml = "<Report><IssueTypes>" + customRules + "</IssueTypes></Report>";
-
-                Reader customRulesReader = new StringReader(customRulesXml);
-                List<ReSharperRule> customReSharperRules = ReSharperFileParser.parseRules(customRulesReader);
+                // only the definitions changed since the previous call are parsed again
+                List<ReSharperRule> customReSharperRules = customRulesParser.parse(customRules);
+                Set<String> overriddenRules = new LinkedHashSet<String>();
                 for(ReSharperRule rRule: customReSharperRules) {
-                    //TODO: do i need to check if the rule has already been added?
-                    rules.add(rRule.toSonarRule());
+                    // a custom definition replaces the built-in (or previous custom) rule with the same key
+                    if (rules.put(rRule.getKey(), rRule) != null) {
+                        overriddenRules.add(rRule.getId());
+                    }
+                }
+                if (!overriddenRules.isEmpty()) {
+                    LOG.warn(overriddenRules.size() + " ReSharper custom rules override an existing definition: "
+                        + StringUtils.join(overriddenRules, ", "));
                 }
             } catch (Exception ex)
             {
@@ -81,7 +90,11 @@ public class ReSharperRuleRepository extends RuleRepository {
             }
         }
 
-        return rules;
+        List<Rule> sonarRules = new ArrayList<Rule>(rules.size());
+        for (ReSharperRule rRule : rules.values()) {
+            sonarRules.add(rRule.toSonarRule());
+        }
+        return sonarRules;
     }
 
 }
@@ -47,11 +47,13 @@ public class ReSharperRuleRepositoryProvider extends ExtensionProvider implement
     @Override
     public Object provide() {
         List<ReSharperRuleRepository> extensions = new ArrayList<ReSharperRuleRepository>();
+        // the repositories of every language read the same custom rules
+        ReSharperCustomRules customRules = new ReSharperCustomRules();
 
         for (String languageKey : ReSharperConstants.SUPPORTED_LANGUAGES) {
             // every repository key should be "resharper-<language_key>"
             String repoKey = ReSharperConstants.REPOSITORY_KEY + "-" + languageKey;
-            extensions.add(new ReSharperRuleRepository(repoKey, languageKey, settings));
+            extensions.add(new ReSharperRuleRepository(repoKey, languageKey, settings, customRules));
         }
 
         return extensions;
@@ -22,8 +22,11 @@ package com.wrightfully.sonar.plugins.dotnet.resharper;
 import com.google.common.base.Joiner;
 import com.wrightfully.sonar.dotnet.tools.resharper.ReSharperCommandBuilder;
 import com.wrightfully.sonar.dotnet.tools.resharper.ReSharperException;
+import com.wrightfully.sonar.dotnet.tools.resharper.ReSharperReportMerger;
 import com.wrightfully.sonar.dotnet.tools.resharper.ReSharperRunner;
 import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperProfileExporter;
+import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperRule;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +35,10 @@ import org.sonar.api.batch.SensorContext;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.ProjectFileSystem;
+import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RuleFinder;
+import org.sonar.api.rules.RuleQuery;
 import org.sonar.api.utils.SonarException;
 import org.sonar.plugins.dotnet.api.DotNetConfiguration;
 import org.sonar.plugins.dotnet.api.DotNetConstants;
@@ -42,8 +49,15 @@ import org.sonar.plugins.dotnet.api.sensor.AbstractRuleBasedDotNetSensor;
 import org.sonar.plugins.dotnet.api.utils.FileFinder;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * Collects the ReSharper reporting into sonar.
@@ -56,12 +70,15 @@ public abstract class ReSharperSensor extends AbstractRuleBasedDotNetSensor {
     private RulesProfile rulesProfile;
     private ReSharperResultParser resharperResultParser;
     private ReSharperConfiguration resharperConfiguration;
+    private ReSharperProfileExporter profileExporter;
+    private RuleFinder ruleFinder;
 
     @DependsUpon(DotNetConstants.CORE_PLUGIN_EXECUTED)
     public static class CSharpRegularReSharperSensor extends ReSharperSensor {
         public CSharpRegularReSharperSensor(ProjectFileSystem fileSystem, RulesProfile rulesProfile, ReSharperProfileExporter.CSharpRegularReSharperProfileExporter profileExporter,
-                                            ReSharperResultParser resharperResultParser, ReSharperConfiguration configuration, MicrosoftWindowsEnvironment microsoftWindowsEnvironment) {
-            super(fileSystem, rulesProfile, profileExporter, resharperResultParser, configuration, microsoftWindowsEnvironment);
+                                            ReSharperResultParser resharperResultParser, ReSharperConfiguration configuration, MicrosoftWindowsEnvironment microsoftWindowsEnvironment,
+                                            RuleFinder ruleFinder) {
+            super(fileSystem, rulesProfile, profileExporter, resharperResultParser, configuration, microsoftWindowsEnvironment, ruleFinder);
         }
 
         /**
@@ -76,8 +93,9 @@ public abstract class ReSharperSensor extends AbstractRuleBasedDotNetSensor {
     @DependsUpon(DotNetConstants.CORE_PLUGIN_EXECUTED)
     public static class VbNetRegularReSharperSensor extends ReSharperSensor {
         public VbNetRegularReSharperSensor(ProjectFileSystem fileSystem, RulesProfile rulesProfile, ReSharperProfileExporter.VbNetRegularReSharperProfileExporter profileExporter,
-                                           ReSharperResultParser resharperResultParser, ReSharperConfiguration configuration, MicrosoftWindowsEnvironment microsoftWindowsEnvironment) {
-            super(fileSystem, rulesProfile, profileExporter, resharperResultParser, configuration, microsoftWindowsEnvironment);
+                                           ReSharperResultParser resharperResultParser, ReSharperConfiguration configuration, MicrosoftWindowsEnvironment microsoftWindowsEnvironment,
+                                           RuleFinder ruleFinder) {
+            super(fileSystem, rulesProfile, profileExporter, resharperResultParser, configuration, microsoftWindowsEnvironment, ruleFinder);
         }
 
         /**
@@ -95,13 +113,16 @@ public abstract class ReSharperSensor extends AbstractRuleBasedDotNetSensor {
      *
      */
     protected ReSharperSensor(ProjectFileSystem fileSystem, RulesProfile rulesProfile,   ReSharperProfileExporter profileExporter,
-                              ReSharperResultParser resharperResultParser, ReSharperConfiguration configuration, MicrosoftWindowsEnvironment microsoftWindowsEnvironment) {
+                              ReSharperResultParser resharperResultParser, ReSharperConfiguration configuration, MicrosoftWindowsEnvironment microsoftWindowsEnvironment,
+                              RuleFinder ruleFinder) {
         super(new DotNetConfiguration(configuration.getSettings()), rulesProfile, profileExporter, microsoftWindowsEnvironment, "ReSharper", configuration.getString(ReSharperConstants.MODE));
         this.fileSystem = fileSystem;
         this.rulesProfile = rulesProfile;
 
         this.resharperConfiguration = configuration;
         this.resharperResultParser = resharperResultParser;
+        this.profileExporter = profileExporter;
+        this.ruleFinder = ruleFinder;
 
     }
 
@@ -143,9 +164,27 @@ public abstract class ReSharperSensor extends AbstractRuleBasedDotNetSensor {
         }
 
         // and analyze results
-        for (File reportFile : reportFiles) {
-            analyseResults(reportFile);
+        if (reportFiles.size() > 1) {
+            analyseResults(mergeReports(reportFiles));
+        } else {
+            for (File reportFile : reportFiles) {
+                analyseResults(reportFile);
+            }
+        }
+    }
+
+    /**
+     * Merges several reports, e.g. the partial reports of a sharded inspection, so that their IssueTypes are read once and
+     * the issues they share are reported once.
+     */
+    private File mergeReports(Collection<File> reportFiles) {
+        File mergedReport = new File(fileSystem.getSonarWorkingDirectory(), ReSharperConstants.MERGED_REPORT_FILENAME);
+        try {
+            new ReSharperReportMerger().merge(new ArrayList<File>(reportFiles), mergedReport);
+        } catch (ReSharperException e) {
+            throw new SonarException("Unable to merge the ReSharper reports.", e);
         }
+        return mergedReport;
     }
 
 
@@ -154,12 +193,85 @@ public abstract class ReSharperSensor extends AbstractRuleBasedDotNetSensor {
         VisualStudioProject vsProject = getVSProject(project);
         ReSharperCommandBuilder builder = runner.createCommandBuilder(vsSolution, vsProject);
         builder.setReportFile(new File(fileSystem.getSonarWorkingDirectory(), ReSharperConstants.REPORT_FILENAME));
-        builder.setDotSettingsFilePath(resharperConfiguration.getString(ReSharperConstants.DOTSETTINGS_FILE_PATH));
+        String dotSettingsPath = resharperConfiguration.getString(ReSharperConstants.DOTSETTINGS_FILE_PATH);
+        if (StringUtils.isBlank(dotSettingsPath)) {
+            builder.setDotSettingsFile(generateDotSettingsFile(vsSolution));
+        } else {
+            builder.setDotSettingsFilePath(dotSettingsPath);
+        }
         builder.setAdditionalParameters(resharperConfiguration.getString(ReSharperConstants.ADDITIONAL_CMD_ARGS));
+        builder.setNoSolutionWideAnalysis(!isSolutionWideAnalysisRequired());
+        builder.setChangedFilesOnly(resharperConfiguration.getBoolean(ReSharperConstants.CHANGED_FILES_ONLY_KEY));
         int timeout = resharperConfiguration.getInt(ReSharperConstants.TIMEOUT_MINUTES_KEY);
         runner.execute(builder, timeout);
     }
 
+    /**
+     * Tells if inspectcode has to run its solution-wide analysis, which is the slowest part of the inspection. Unless forced
+     * through {@link ReSharperConstants#SOLUTION_WIDE_ANALYSIS_KEY}, it is only run when an active rule depends on it.
+     */
+    protected boolean isSolutionWideAnalysisRequired() {
+        String mode = resharperConfiguration.getString(ReSharperConstants.SOLUTION_WIDE_ANALYSIS_KEY);
+        if (ReSharperConstants.SOLUTION_WIDE_ANALYSIS_ALWAYS.equalsIgnoreCase(mode)) {
+            return true;
+        }
+        if (ReSharperConstants.SOLUTION_WIDE_ANALYSIS_NEVER.equalsIgnoreCase(mode)) {
+            return false;
+        }
+
+        for (String language : getSupportedLanguages()) {
+            String repositoryKey = ReSharperConstants.REPOSITORY_KEY + "-" + language;
+            for (ActiveRule activeRule : rulesProfile.getActiveRulesByRepository(repositoryKey)) {
+                if (ReSharperRule.requiresSolutionWideAnalysis(activeRule.getRule().getName())) {
+                    LOG.debug("Solution-wide analysis required by the active rule " + activeRule.getRuleKey());
+                    return true;
+                }
+            }
+        }
+        LOG.info("No active ReSharper rule requires the solution-wide analysis, it will be disabled.");
+        return false;
+    }
+
+    /**
+     * Generates a dotSettings file from the active rules profile, so that inspectcode skips the inspections that are not
+     * active in Sonar, custom rules included. As inspectcode does not read the shared settings of the solution when it is
+     * given a dotSettings file, they are copied into the generated one.
+     */
+    private File generateDotSettingsFile(VisualStudioSolution vsSolution) throws ReSharperException {
+        File dotSettingsFile = new File(fileSystem.getSonarWorkingDirectory(), ReSharperConstants.PROFILE_DOTSETTINGS_FILENAME);
+        File sharedSettingsFile = new File(vsSolution.getSolutionFile().getPath() + ".DotSettings");
+        if (sharedSettingsFile.isFile()) {
+            LOG.debug("The ReSharper dotSettings file of the quality profile extends the shared settings " + sharedSettingsFile);
+        } else {
+            sharedSettingsFile = null;
+        }
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(dotSettingsFile), "UTF-8");
+            profileExporter.exportDotSettings(rulesProfile, findRepositoryIssueTypes(), sharedSettingsFile, writer);
+        } catch (IOException e) {
+            throw new ReSharperException("Unable to write the ReSharper dotSettings file " + dotSettingsFile + ": " + e.getMessage());
+        } finally {
+            IOUtils.closeQuietly(writer);
+        }
+        LOG.debug("Generated the ReSharper dotSettings file of the quality profile: " + dotSettingsFile);
+        return dotSettingsFile;
+    }
+
+    /**
+     * @return the IssueTypes of the rules registered by the server, custom rules included
+     */
+    private Set<String> findRepositoryIssueTypes() {
+        Set<String> issueTypes = new LinkedHashSet<String>();
+        for (String language : getSupportedLanguages()) {
+            String repositoryKey = ReSharperConstants.REPOSITORY_KEY + "-" + language;
+            for (Rule rule : ruleFinder.findAll(RuleQuery.create().withRepositoryKey(repositoryKey))) {
+                issueTypes.add(rule.getName());
+            }
+        }
+        return issueTypes;
+    }
+
     private void analyseResults(File reportFile) throws SonarException {
         if (reportFile.exists()) {
             LOG.debug("ReSharper report found at location" + reportFile);
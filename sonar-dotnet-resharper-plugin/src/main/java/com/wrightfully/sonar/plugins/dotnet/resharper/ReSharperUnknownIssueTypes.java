@@ -0,0 +1,165 @@
+/*
+ * Sonar .NET Plugin :: ReSharper
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.plugins.dotnet.resharper;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * IssueTypes of the ReSharper reports that have no rule in the repository. They are counted during the analysis, and
+ * remembered in the working directory so that the next analyses do not look them up again. The remembered types are
+ * forgotten as soon as the rules registered by the server change, i.e. when the validity key differs.
+ */
+final class ReSharperUnknownIssueTypes {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReSharperUnknownIssueTypes.class);
+
+    static final String FILENAME = "resharper-unknown-issuetypes.properties";
+    private static final String VALIDITY_PROPERTY = "#validity";
+
+    private final File file;
+    private final String validityKey;
+    private final Set<String> previouslyUnknown;
+    private final Map<String, Integer> occurrences = new TreeMap<String, Integer>();
+
+    private ReSharperUnknownIssueTypes(File file, String validityKey, Set<String> previouslyUnknown) {
+        this.file = file;
+        this.validityKey = validityKey;
+        this.previouslyUnknown = previouslyUnknown;
+    }
+
+    /**
+     * Loads the types remembered in the given directory, if they are still valid.
+     *
+     * @param workingDir
+     *          the directory to persist the types into, or null to keep them in memory only
+     * @param validityKey
+     *          identifies the rules registered by the server
+     */
+    static ReSharperUnknownIssueTypes load(File workingDir, String validityKey) {
+        if (workingDir == null) {
+            return new ReSharperUnknownIssueTypes(null, validityKey, Collections.<String>emptySet());
+        }
+        File file = new File(workingDir, FILENAME);
+        Set<String> previouslyUnknown = new HashSet<String>();
+        if (file.isFile()) {
+            Properties properties = new Properties();
+            InputStream in = null;
+            try {
+                in = new FileInputStream(file);
+                properties.load(in);
+                if (validityKey.equals(properties.getProperty(VALIDITY_PROPERTY))) {
+                    for (Enumeration<?> names = properties.propertyNames(); names.hasMoreElements();) {
+                        previouslyUnknown.add((String) names.nextElement());
+                    }
+                    previouslyUnknown.remove(VALIDITY_PROPERTY);
+                }
+            } catch (IOException e) {
+                LOG.debug("Unable to read " + file + ": " + e.getMessage());
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+        return new ReSharperUnknownIssueTypes(file, validityKey, previouslyUnknown);
+    }
+
+    /**
+     * @return true if a previous analysis already failed to find a rule for this type
+     */
+    boolean isKnownToBeUnknown(String typeId) {
+        return previouslyUnknown.contains(typeId);
+    }
+
+    /**
+     * Records a type declared by a report that has no rule, before any issue of this type is met.
+     */
+    void addType(String typeId) {
+        if (!occurrences.containsKey(typeId)) {
+            occurrences.put(typeId, 0);
+        }
+    }
+
+    /**
+     * Counts an issue whose type has no rule.
+     *
+     * @return true for the first occurrence of the type
+     */
+    boolean addOccurrence(String typeId) {
+        Integer count = occurrences.get(typeId);
+        int newCount = count == null ? 1 : count + 1;
+        occurrences.put(typeId, newCount);
+        return newCount == 1;
+    }
+
+    /**
+     * @return the number of issues of each unknown type that occurred, sorted by type
+     */
+    Map<String, Integer> getOccurrences() {
+        Map<String, Integer> result = new TreeMap<String, Integer>();
+        for (Map.Entry<String, Integer> occurrence : occurrences.entrySet()) {
+            if (occurrence.getValue() > 0) {
+                result.put(occurrence.getKey(), occurrence.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remembers the unknown types for the next analyses. Failures are logged only.
+     */
+    void save() {
+        if (file == null) {
+            return;
+        }
+        Properties properties = new Properties();
+        for (String typeId : previouslyUnknown) {
+            properties.setProperty(typeId, "0");
+        }
+        for (Map.Entry<String, Integer> occurrence : occurrences.entrySet()) {
+            properties.setProperty(occurrence.getKey(), occurrence.getValue().toString());
+        }
+        properties.setProperty(VALIDITY_PROPERTY, validityKey);
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            properties.store(out, "ReSharper IssueTypes without rule");
+        } catch (IOException e) {
+            LOG.debug("Unable to write " + file + ": " + e.getMessage());
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+}
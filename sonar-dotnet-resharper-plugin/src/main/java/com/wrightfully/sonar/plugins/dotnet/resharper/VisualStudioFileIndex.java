@@ -0,0 +1,138 @@
+/*
+ * Sonar .NET Plugin :: ReSharper
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.plugins.dotnet.resharper;
+
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.plugins.dotnet.api.microsoft.MicrosoftWindowsEnvironment;
+import org.sonar.plugins.dotnet.api.microsoft.SourceFile;
+import org.sonar.plugins.dotnet.api.microsoft.VisualStudioProject;
+import org.sonar.plugins.dotnet.api.microsoft.VisualStudioSolution;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the source files of every project of the current Visual Studio solution, shared by the analyses of all the
+ * modules. It tells with one lookup which projects own a file, instead of asking each project through
+ * {@link VisualStudioProject#contains(File)} for every issue. The index is built the first time it is needed.
+ */
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class VisualStudioFileIndex implements BatchExtension {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VisualStudioFileIndex.class);
+
+    private final MicrosoftWindowsEnvironment env;
+
+    private Map<String, List<VisualStudioProject>> projectsByPath;
+
+    /**
+     * Projects whose source files are indexed. The others (web sites, projects without source files...) are asked directly.
+     */
+    private Set<VisualStudioProject> indexedProjects;
+
+    public VisualStudioFileIndex(MicrosoftWindowsEnvironment env) {
+        this.env = env;
+    }
+
+    /**
+     * Tells if a file belongs to a project.
+     *
+     * @param project
+     *          the project
+     * @param file
+     *          the file
+     * @return true if the file is one of the source files of the project
+     */
+    public boolean contains(VisualStudioProject project, File file) {
+        init();
+        if (!indexedProjects.contains(project)) {
+            return project.contains(file);
+        }
+        List<VisualStudioProject> owners = projectsByPath.get(normalize(file));
+        return owners != null && owners.contains(project);
+    }
+
+    /**
+     * @return the projects that have the given file among their source files, empty if none does
+     */
+    public List<VisualStudioProject> getProjects(File file) {
+        init();
+        List<VisualStudioProject> owners = projectsByPath.get(normalize(file));
+        return owners == null ? Collections.<VisualStudioProject>emptyList() : Collections.unmodifiableList(owners);
+    }
+
+    private synchronized void init() {
+        if (projectsByPath != null) {
+            return;
+        }
+        Map<String, List<VisualStudioProject>> index = new HashMap<String, List<VisualStudioProject>>();
+        Set<VisualStudioProject> indexed = new HashSet<VisualStudioProject>();
+
+        VisualStudioSolution solution = env == null ? null : env.getCurrentSolution();
+        Collection<VisualStudioProject> projects = solution == null ? null : solution.getProjects();
+        if (projects != null) {
+            for (VisualStudioProject project : projects) {
+                Collection<SourceFile> sourceFiles = project.getSourceFiles();
+                if (sourceFiles == null || sourceFiles.isEmpty()) {
+                    continue;
+                }
+                indexed.add(project);
+                for (SourceFile sourceFile : sourceFiles) {
+                    String path = normalize(sourceFile.getFile());
+                    List<VisualStudioProject> owners = index.get(path);
+                    if (owners == null) {
+                        owners = new ArrayList<VisualStudioProject>(1);
+                        index.put(path, owners);
+                    }
+                    if (!owners.contains(project)) {
+                        owners.add(project);
+                    }
+                }
+            }
+        }
+        LOG.debug("Indexed " + index.size() + " source files of " + indexed.size() + " Visual Studio projects");
+        this.indexedProjects = indexed;
+        this.projectsByPath = index;
+    }
+
+    /**
+     * Visual Studio and ReSharper paths are case insensitive, and may use either separator.
+     */
+    static String normalize(File file) {
+        String path = FilenameUtils.normalize(FilenameUtils.separatorsToUnix(file.getAbsolutePath()), true);
+        if (path == null) {
+            path = FilenameUtils.separatorsToUnix(file.getAbsolutePath());
+        }
+        return path.toLowerCase(Locale.ENGLISH);
+    }
+
+}
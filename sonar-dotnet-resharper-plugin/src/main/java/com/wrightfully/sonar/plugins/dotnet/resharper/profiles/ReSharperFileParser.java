@@ -23,92 +23,151 @@ package com.wrightfully.sonar.plugins.dotnet.resharper.profiles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.ValidationMessages;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Streaming parser of the IssueType definitions found in ReSharper files (inspectcode reports, exported profiles, custom
+ * rules...). Rules are handed over one at a time, so the memory used does not depend on the size of the file.
+ */
 public class ReSharperFileParser {
     private static final Logger LOG = LoggerFactory.getLogger(ReSharperFileParser.class);
 
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    /**
+     * Receives the rules while the file is being parsed.
+     */
+    public interface RuleHandler {
+        void onRule(ReSharperRule rule);
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        return factory;
+    }
+
     public static List<ReSharperRule> parseRules(Reader reader) {
         return parseRules(reader, null);
     }
 
     public static List<ReSharperRule> parseRules(Reader reader, ValidationMessages messages) {
-        List<ReSharperRule> result = new ArrayList<ReSharperRule>();
+        final List<ReSharperRule> result = new ArrayList<ReSharperRule>();
+        boolean parsed = parseRules(reader, messages, new RuleHandler() {
+            public void onRule(ReSharperRule rule) {
+                result.add(rule);
+            }
+        });
+        if (!parsed) {
+            // an unreadable file contributes no rule at all
+            result.clear();
+        }
+        return result;
+    }
 
+    /**
+     * Parses the IssueType nodes of a file, handing each rule over as soon as it is read.
+     *
+     * @param reader
+     *          the file content
+     * @param messages
+     *          where to report errors, or null to log them
+     * @param handler
+     *          the receiver of the rules
+     * @return false if the file could not be read entirely
+     */
+    public static boolean parseRules(Reader reader, ValidationMessages messages, RuleHandler handler) {
+        XMLStreamReader stream = null;
         try {
-            InputSource source = new InputSource(reader);
-            XPathFactory factory = XPathFactory.newInstance();
-            XPath xpath = factory.newXPath();
-            NodeList nodes = (NodeList) xpath.evaluate("//IssueType",source, XPathConstants.NODESET);
-
-            if (nodes == null || nodes.getLength() == 0)  {
-                String logMsg = "No IssueType nodes found in profile file";
-                if (messages != null)
-                    messages.addErrorText(logMsg);
-                else LOG.error(logMsg);
+            stream = INPUT_FACTORY.createXMLStreamReader(reader);
+            int count = 0;
+            while (stream.hasNext()) {
+                if (stream.next() == XMLStreamConstants.START_ELEMENT && "IssueType".equals(stream.getLocalName())) {
+                    handler.onRule(readRule(stream, messages));
+                    count++;
+                }
             }
-            else {
 
-                int count = nodes.getLength();
+            if (count == 0)  {
+                logError(messages, "No IssueType nodes found in profile file");
+            } else {
                 LOG.info("Found " + count + " IssueType nodes (rules)" );
+            }
+            return true;
+        } catch (XMLStreamException e) {
+            // the message is kept as it was when the file was parsed through XPath
+            logWarning(messages, "xpath exception while parsing resharper config file: " + e.getMessage());
+        } catch (Exception e) {
+            logWarning(messages, "Failed to read the profile to import: " + e.getMessage());
+        } finally {
+            closeQuietly(stream);
+        }
+        return false;
+    }
 
-                // For each rule we extract the elements
-                for (int idxRule = 0; idxRule < count; idxRule++) {
-                    Element ruleElement = (Element) nodes.item(idxRule);
-                    ReSharperRule rule = new ReSharperRule();
-                    String ruleId = ruleElement.getAttribute("Id");
-                    rule.setId(ruleId);
+    private static ReSharperRule readRule(XMLStreamReader ruleElement, ValidationMessages messages) {
+        ReSharperRule rule = new ReSharperRule();
+        String ruleId = getAttribute(ruleElement, "Id");
+        rule.setId(ruleId);
 
-                    String active = ruleElement.getAttribute("Enabled");
-                    rule.setEnabled(active.toLowerCase().contains("true"));
+        String active = getAttribute(ruleElement, "Enabled");
+        rule.setEnabled(active.toLowerCase().contains("true"));
 
-                    String category = ruleElement.getAttribute("Category");
-                    rule.setCategory(category);
+        String category = getAttribute(ruleElement, "Category");
+        rule.setCategory(category);
 
-                    String description = ruleElement.getAttribute("Description");
-                    rule.setDescription(description);
+        String description = getAttribute(ruleElement, "Description");
+        rule.setDescription(description);
 
-                    String wikiLink = ruleElement.getAttribute("WikiUrl");
-                    rule.setWikiLink(wikiLink);
+        String wikiLink = getAttribute(ruleElement, "WikiUrl");
+        rule.setWikiLink(wikiLink);
 
-                    String severity = ruleElement.getAttribute("Severity");
-                    try {
-                        rule.setSeverity(ReSharperRule.ReSharperSeverity.valueOf(severity));
-                    } catch (Exception ex)
-                    {
-                        rule.setSeverity(ReSharperRule.ReSharperSeverity.WARNING);
+        String severity = getAttribute(ruleElement, "Severity");
+        try {
+            rule.setSeverity(ReSharperRule.ReSharperSeverity.valueOf(severity));
+        } catch (Exception ex)
+        {
+            rule.setSeverity(ReSharperRule.ReSharperSeverity.WARNING);
+            logWarning(messages, "exception while parsing resharper severity '" + severity +"': " + ex.getMessage());
+        }
+        return rule;
+    }
 
-                        String logMsg = "exception while parsing resharper severity '" + severity +"': " + ex.getMessage();
-                        if (messages != null)
-                            messages.addErrorText(logMsg);
-                        else LOG.warn(logMsg);
+    /**
+     * Same contract as the DOM: a missing attribute is an empty string.
+     */
+    private static String getAttribute(XMLStreamReader element, String name) {
+        String value = element.getAttributeValue(null, name);
+        return value == null ? "" : value;
+    }
 
-                    }
-                    result.add(rule);
-                }
-            }
-        } catch (XPathExpressionException e) {
-            String logMsg = "xpath exception while parsing resharper config file: " + e.getMessage();
-            if (messages != null)
-                messages.addErrorText(logMsg);
-            else LOG.warn(logMsg);
+    private static void logError(ValidationMessages messages, String logMsg) {
+        if (messages != null)
+            messages.addErrorText(logMsg);
+        else LOG.error(logMsg);
+    }
 
-        } catch (Exception e) {
-            String logMsg =       "Failed to read the profile to import: " + e.getMessage();
-            if (messages != null)
-                messages.addErrorText(logMsg);
-            else LOG.warn(logMsg);
+    private static void logWarning(ValidationMessages messages, String logMsg) {
+        if (messages != null)
+            messages.addErrorText(logMsg);
+        else LOG.warn(logMsg);
+    }
+
+    private static void closeQuietly(XMLStreamReader stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (XMLStreamException e) {
+                LOG.debug("Unable to close the ReSharper file: " + e.getMessage());
+            }
         }
-        return result;
     }
 }
@@ -0,0 +1,131 @@
+/*
+ * Sonar .NET Plugin :: ReSharper
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.plugins.dotnet.resharper.profiles;
+
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RulePriority;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Differences between a Sonar profile and an imported ReSharper file: the rules to activate, the active rules to
+ * deactivate, and the active rules whose severity changes. Built by
+ * {@link ReSharperProfileImporter#importChanges(RulesProfile, java.io.Reader, org.sonar.api.utils.ValidationMessages)}.
+ */
+public class ReSharperProfileChanges {
+
+    private final List<Activation> activations = new ArrayList<Activation>();
+    private final List<ActiveRule> deactivations = new ArrayList<ActiveRule>();
+    private final List<Activation> severityChanges = new ArrayList<Activation>();
+
+    /**
+     * A rule and the severity it gets in the profile.
+     */
+    public static final class Activation {
+        private final Rule rule;
+        private final RulePriority severity;
+
+        Activation(Rule rule, RulePriority severity) {
+            this.rule = rule;
+            this.severity = severity;
+        }
+
+        public Rule getRule() {
+            return rule;
+        }
+
+        public RulePriority getSeverity() {
+            return severity;
+        }
+
+        @Override
+        public String toString() {
+            return rule.getKey() + "=" + severity;
+        }
+    }
+
+    void activate(Rule rule, RulePriority severity) {
+        activations.add(new Activation(rule, severity));
+    }
+
+    void deactivate(ActiveRule activeRule) {
+        deactivations.add(activeRule);
+    }
+
+    void changeSeverity(ActiveRule activeRule, RulePriority severity) {
+        severityChanges.add(new Activation(activeRule.getRule(), severity));
+    }
+
+    /**
+     * @return the rules that are not active yet
+     */
+    public List<Activation> getActivations() {
+        return Collections.unmodifiableList(activations);
+    }
+
+    /**
+     * @return the active rules that are no longer wanted
+     */
+    public List<ActiveRule> getDeactivations() {
+        return Collections.unmodifiableList(deactivations);
+    }
+
+    /**
+     * @return the active rules whose severity changes, with their new severity
+     */
+    public List<Activation> getSeverityChanges() {
+        return Collections.unmodifiableList(severityChanges);
+    }
+
+    public boolean isEmpty() {
+        return activations.isEmpty() && deactivations.isEmpty() && severityChanges.isEmpty();
+    }
+
+    /**
+     * Applies these changes to the profile they were computed against.
+     *
+     * @param profile
+     *          the profile to update
+     */
+    public void applyTo(RulesProfile profile) {
+        for (ActiveRule activeRule : deactivations) {
+            profile.removeActiveRule(activeRule);
+        }
+        for (Activation change : severityChanges) {
+            ActiveRule activeRule = profile.getActiveRule(change.getRule());
+            if (activeRule != null) {
+                activeRule.setSeverity(change.getSeverity());
+            }
+        }
+        for (Activation activation : activations) {
+            profile.activateRule(activation.getRule(), activation.getSeverity());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "activations=" + activations + ", deactivations=" + deactivations.size() + ", severityChanges=" + severityChanges;
+    }
+
+}
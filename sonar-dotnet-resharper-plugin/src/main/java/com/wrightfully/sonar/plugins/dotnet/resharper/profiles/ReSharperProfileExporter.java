@@ -19,6 +19,8 @@
  */
 package com.wrightfully.sonar.plugins.dotnet.resharper.profiles;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.profiles.ProfileExporter;
@@ -27,14 +29,28 @@ import org.sonar.api.rules.ActiveRule;
 import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RulePriority;
 import org.sonar.api.utils.SonarException;
+import com.wrightfully.sonar.dotnet.tools.resharper.Fnv1aHash;
 import com.wrightfully.sonar.plugins.dotnet.resharper.ReSharperConstants;
 import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperRule;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.Exception;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Class that allows to export a Sonar profile into a ReSharper rule definition file.
@@ -53,6 +69,86 @@ public class ReSharperProfileExporter extends ProfileExporter {
         }
     }
 
+    private static final int MAX_CACHED_EXPORTS = 16;
+    private static final int MAX_CACHED_FRAGMENTS = 5000;
+
+    private static final String XAML_NAMESPACE = "http://schemas.microsoft.com/winfx/2006/xaml";
+    private static final String SYSTEM_NAMESPACE = "clr-namespace:System;assembly=mscorlib";
+
+    /**
+     * Complete exports, by hash of the active rules they were printed from.
+     */
+    private final Map<Long, ProfileExport> exportCache = new LruCache<Long, ProfileExport>(MAX_CACHED_EXPORTS);
+
+    /**
+     * Escaped IssueType elements, by rule name, severity and status. The description is checked on retrieval as it is
+     * the only other input of the element.
+     */
+    private final Map<String, RuleFragment> fragmentCache = new LruCache<String, RuleFragment>(MAX_CACHED_FRAGMENTS);
+
+    private static final class LruCache<K, V> extends LinkedHashMap<K, V> {
+        private final int maxSize;
+
+        LruCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    /**
+     * Export of a list of active rules, with everything it was printed from: the name, description, status and severity of
+     * each rule. It is only reused for the very same list, whatever its hash.
+     */
+    private static final class ProfileExport {
+        private final Object[] inputs;
+        private final String xml;
+
+        ProfileExport(List<ActiveRule> activeRules, String xml) {
+            this.inputs = new Object[activeRules.size() * 4];
+            int i = 0;
+            for (ActiveRule activeRule : activeRules) {
+                Rule rule = activeRule.getRule();
+                inputs[i++] = rule.getName();
+                inputs[i++] = rule.getDescription();
+                inputs[i++] = rule.isEnabled();
+                inputs[i++] = activeRule.getSeverity();
+            }
+            this.xml = xml;
+        }
+
+        boolean isExportOf(List<ActiveRule> activeRules) {
+            if (inputs.length != activeRules.size() * 4) {
+                return false;
+            }
+            int i = 0;
+            for (ActiveRule activeRule : activeRules) {
+                Rule rule = activeRule.getRule();
+                if (!StringUtils.equals((String) inputs[i++], rule.getName())
+                    || !StringUtils.equals((String) inputs[i++], rule.getDescription())
+                    || !ObjectUtils.equals(inputs[i++], rule.isEnabled())
+                    || inputs[i++] != activeRule.getSeverity()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class RuleFragment {
+        private final String description;
+        private final String xml;
+
+        RuleFragment(String description, String xml) {
+            this.description = description;
+            this.xml = xml;
+        }
+    }
+
     protected ReSharperProfileExporter(String languageKey) {
         super(ReSharperConstants.REPOSITORY_KEY + "-" + languageKey, ReSharperConstants.REPOSITORY_NAME);
         setSupportedLanguages(languageKey);
@@ -71,22 +167,214 @@ public class ReSharperProfileExporter extends ProfileExporter {
         }
     }
 
+    /**
+     * Exports a Sonar profile into a ReSharper .DotSettings layer: the severity of every active rule is set according to its
+     * Sonar priority, and every other built-in IssueType is disabled so that inspectcode does not even run it.
+     *
+     * @param profile
+     *          the profile to export
+     * @param writer
+     *          the destination of the .DotSettings content
+     */
+    public void exportDotSettings(RulesProfile profile, Writer writer) {
+        exportDotSettings(profile, Collections.<String> emptyList(), null, writer);
+    }
+
+    /**
+     * Exports a Sonar profile on top of an existing .DotSettings layer, typically the shared settings of the solution, which
+     * inspectcode ignores when it is given another file through /profile. The settings of the base layer are kept, except
+     * the severities: the severity of every active rule is set according to its Sonar priority, and every other built-in or
+     * given IssueType is disabled.
+     *
+     * @param profile
+     *          the profile to export
+     * @param issueTypeIds
+     *          the IssueTypes to disable unless active, in addition to the built-in ones: e.g. the custom rules
+     * @param baseLayer
+     *          the .DotSettings file to extend, or null
+     * @param writer
+     *          the destination of the .DotSettings content
+     */
+    public void exportDotSettings(RulesProfile profile, Collection<String> issueTypeIds, File baseLayer, Writer writer) {
+        try {
+            printDotSettings(profile, issueTypeIds, baseLayer, writer);
+        } catch (IOException e) {
+            throw new SonarException("Error while generating the ReSharper dotSettings file of profile: " + profile, e);
+        }
+    }
+
+    private void printDotSettings(RulesProfile profile, Collection<String> issueTypeIds, File baseLayer, Writer writer) throws IOException {
+        Map<String, String> severities = new TreeMap<String, String>();
+        for (ReSharperRule rule : ReSharperRuleCatalog.getDefault().getRules()) {
+            severities.put(rule.getId(), ReSharperRule.ReSharperSeverity.DO_NOT_SHOW.toString());
+        }
+        for (String issueTypeId : issueTypeIds) {
+            severities.put(issueTypeId, ReSharperRule.ReSharperSeverity.DO_NOT_SHOW.toString());
+        }
+        for (ReSharperRule rule : transformIntoReSharperRules(profile.getActiveRulesByRepository(getKey()))) {
+            ReSharperRule.ReSharperSeverity severity = rule.getSeverity();
+            if (severity == ReSharperRule.ReSharperSeverity.INFO) {
+                // INFO is only reported by inspectcode, it cannot be set in the settings
+                severity = ReSharperRule.ReSharperSeverity.HINT;
+            }
+            severities.put(rule.getId(), severity.toString());
+        }
+
+        // settings by key: the element name and value
+        Map<String, String[]> entries = new LinkedHashMap<String, String[]>();
+        if (baseLayer != null) {
+            readDotSettings(baseLayer, entries);
+        }
+        for (Map.Entry<String, String> severity : severities.entrySet()) {
+            // <s:String x:Key="/Default/CodeInspection/Highlighting/InspectionSeverities/=ClassNeverInstantiated_002EGlobal/@EntryIndexedValue">DO_NOT_SHOW</s:String>
+            String key = "/Default/CodeInspection/Highlighting/InspectionSeverities/=" + encodeSettingsKey(severity.getKey()) + "/@EntryIndexedValue";
+            entries.put(key, new String[] {"String", severity.getValue()});
+        }
+
+        writer.append("<wpf:ResourceDictionary xml:space=\"preserve\" xmlns:x=\"" + XAML_NAMESPACE + "\" "
+                + "xmlns:s=\"" + SYSTEM_NAMESPACE + "\" xmlns:ss=\"urn:shemas-jetbrains-com:settings-storage-xaml\" "
+                + "xmlns:wpf=\"http://schemas.microsoft.com/winfx/2006/xaml/presentation\">\n");
+        for (Map.Entry<String, String[]> entry : entries.entrySet()) {
+            String type = entry.getValue()[0];
+            writer.append("\t<s:").append(type).append(" x:Key=\"");
+            StringEscapeUtils.escapeXml(writer, entry.getKey());
+            writer.append("\">");
+            StringEscapeUtils.escapeXml(writer, entry.getValue()[1]);
+            writer.append("</s:").append(type).append(">\n");
+        }
+        writer.append("</wpf:ResourceDictionary>");
+    }
+
+    /**
+     * Reads the settings of a .DotSettings file: the elements of the System namespace (s:String, s:Boolean, s:Int64...)
+     * found under its root element.
+     */
+    private static void readDotSettings(File dotSettingsFile, Map<String, String[]> entries) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        InputStream input = null;
+        XMLStreamReader stream = null;
+        try {
+            input = new FileInputStream(dotSettingsFile);
+            stream = factory.createXMLStreamReader(input);
+            int depth = 0;
+            while (stream.hasNext()) {
+                int event = stream.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                } else if (event == XMLStreamConstants.START_ELEMENT) {
+                    String key = stream.getAttributeValue(XAML_NAMESPACE, "Key");
+                    if (depth == 1 && SYSTEM_NAMESPACE.equals(stream.getNamespaceURI()) && key != null) {
+                        // reads up to the end of the element
+                        entries.put(key, new String[] {stream.getLocalName(), stream.getElementText()});
+                    } else {
+                        depth++;
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            IOException exception = new IOException("Unable to read the ReSharper settings layer " + dotSettingsFile + ": " + e.getMessage());
+            exception.initCause(e);
+            throw exception;
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (XMLStreamException e) {
+                    // nothing more to read
+                }
+            }
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * ReSharper settings keys escape every character that is not a letter or a digit as "_" followed by its 4-digit
+     * hexadecimal code: "ClassNeverInstantiated.Global" is stored as "ClassNeverInstantiated_002EGlobal".
+     */
+    static String encodeSettingsKey(String issueTypeId) {
+        StringBuilder key = new StringBuilder(issueTypeId.length() + 16);
+        for (int i = 0; i < issueTypeId.length(); i++) {
+            char c = issueTypeId.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                key.append(c);
+            } else {
+                key.append('_').append(String.format("%04X", (int) c));
+            }
+        }
+        return key.toString();
+    }
+
     private void printRules(RulesProfile profile, Writer writer) throws IOException {
-        //Create a file that matches the format of the ReSharper inspectcode.exe output
+        writer.write(getExport(profile.getActiveRulesByRepository(getKey())));
+    }
+
+    /**
+     * Returns the export of the given active rules, printed once for each distinct list of rules: repeated exports of an
+     * unchanged profile, or of profiles with the same rules, are served from memory.
+     */
+    private String getExport(List<ActiveRule> activeRules) throws IOException {
+        Long hash = hash(activeRules);
+        synchronized (exportCache) {
+            ProfileExport export = exportCache.get(hash);
+            if (export != null && export.isExportOf(activeRules)) {
+                return export.xml;
+            }
+        }
 
+        //Create a file that matches the format of the ReSharper inspectcode.exe output
+        StringWriter writer = new StringWriter(128 + activeRules.size() * 256);
         writer.append("<Report>\n");
         writer.append("  <IssueTypes>\n");
 
-        List<ActiveRule> activeRules = profile.getActiveRulesByRepository(getKey());
-        List<ReSharperRule> rules = transformIntoReSharperRules(activeRules);
-
-        // print out each rule
-        for (ReSharperRule rule : rules) {
-            printRule(writer, rule);
+        // print out each rule, reusing the escaped element of the rules already exported
+        for (ActiveRule activeRule : activeRules) {
+            writer.append(getRuleFragment(activeRule));
         }
 
         writer.append("  </IssueTypes>\n");
         writer.append("</Report>");
+
+        String xml = writer.toString();
+        synchronized (exportCache) {
+            exportCache.put(hash, new ProfileExport(activeRules, xml));
+        }
+        return xml;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the inputs of the export of the given rules, see {@link ProfileExport}.
+     */
+    private static long hash(List<ActiveRule> activeRules) {
+        long hash = Fnv1aHash.OFFSET_BASIS;
+        for (ActiveRule activeRule : activeRules) {
+            Rule rule = activeRule.getRule();
+            hash = Fnv1aHash.hash(hash, rule.getName());
+            hash = Fnv1aHash.hash(hash, rule.getDescription());
+            hash = Fnv1aHash.hash(hash, String.valueOf(rule.isEnabled()));
+            hash = Fnv1aHash.hash(hash, activeRule.getSeverity() == null ? -1 : activeRule.getSeverity().ordinal());
+        }
+        return hash;
+    }
+
+    private String getRuleFragment(ActiveRule activeRule) throws IOException {
+        Rule rule = activeRule.getRule();
+        String description = rule.getDescription();
+        String fragmentKey = rule.getName() + "\u0000" + activeRule.getSeverity() + "\u0000" + rule.isEnabled();
+        synchronized (fragmentCache) {
+            RuleFragment fragment = fragmentCache.get(fragmentKey);
+            if (fragment != null && StringUtils.equals(fragment.description, description)) {
+                return fragment.xml;
+            }
+        }
+        StringWriter writer = new StringWriter();
+        printRule(writer, ReSharperRule.createFromActiveRule(activeRule));
+        String xml = writer.toString();
+        synchronized (fragmentCache) {
+            fragmentCache.put(fragmentKey, new RuleFragment(description, xml));
+        }
+        return xml;
     }
 
 
@@ -23,6 +23,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.profiles.ProfileImporter;
 import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.rules.ActiveRule;
 import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.rules.RulePriority;
@@ -32,7 +33,12 @@ import com.wrightfully.sonar.plugins.dotnet.resharper.ReSharperConstants;
 import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperRule;
 
 import java.io.Reader;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Class that allows to import ReSharper rule definition files into a Sonar Rule Profile
@@ -68,9 +74,6 @@ public class ReSharperProfileImporter extends ProfileImporter {
      */
     @Override
     public RulesProfile importProfile(Reader reader, ValidationMessages messages) {
-        RulesProfile profile = RulesProfile.create();
-        profile.setLanguage(languageKey);
-
         //incoming format:
 //        <IssueType Id="ClassNeverInstantiated.Global"
 //           Enabled="True"
@@ -79,17 +82,33 @@ public class ReSharperProfileImporter extends ProfileImporter {
 //                   Severity="SUGGESTION" />
 
 
-        List<ReSharperRule> rules = ReSharperFileParser.parseRules(reader, messages);
+        return importRules(ReSharperFileParser.parseRules(reader, messages), messages);
+    }
 
+    /**
+     * Creates a profile activating the given rules, already parsed from a ReSharper file.
+     *
+     * @param rules
+     *          the rules to activate
+     * @param messages
+     *          where to report the unknown rules
+     * @return the profile
+     */
+    public RulesProfile importRules(Collection<ReSharperRule> rules, ValidationMessages messages) {
+        RulesProfile profile = RulesProfile.create();
+        profile.setLanguage(languageKey);
+
+        Map<String, Rule> repositoryRules = findRepositoryRules();
         for (ReSharperRule reSharperRule : rules) {
-        	String ruleName = reSharperRule.getId();
-            String ruleKey = reSharperRule.getKey();
-            Rule rule = ruleFinder.find(RuleQuery.create().withRepositoryKey(getKey()).withKey(ruleKey));
+            String ruleName = reSharperRule.getId();
+            Rule rule = repositoryRules.get(reSharperRule.getKey());
 
             if (rule != null) {
                 RulePriority sonarPriority = reSharperRule.getSonarPriority();
                 profile.activateRule(rule, sonarPriority);
-                LOG.debug("Activating profile rule " + rule.getKey() + " with priority " + sonarPriority);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Activating profile rule " + rule.getKey() + " with priority " + sonarPriority);
+                }
             } else {
                 messages.addWarningText("Unable to find rule for key '" + ruleName +"' in repository '"+getKey()+"'");
             }
@@ -98,4 +117,89 @@ public class ReSharperProfileImporter extends ProfileImporter {
         return profile;
     }
 
+    /**
+     * Compares a ReSharper file with an existing profile, and returns only the differences with what
+     * {@link #importProfile(Reader, ValidationMessages)} would create: the listed rules the profile does not activate yet,
+     * the active rules the file no longer lists, and the active rules whose severity differs. Re-importing an almost
+     * unchanged file thus touches only the few rules that changed. Nothing is changed when the file cannot be read, so that
+     * a broken file does not empty the profile.
+     *
+     * @param profile
+     *          the existing profile
+     * @param reader
+     *          the ReSharper file
+     * @param messages
+     *          where to report errors and unknown rules
+     * @return the changes to apply to the profile
+     */
+    public ReSharperProfileChanges importChanges(RulesProfile profile, Reader reader, ValidationMessages messages) {
+        List<ReSharperRule> rules = ReSharperFileParser.parseRules(reader, messages);
+        if (messages.hasErrors()) {
+            return new ReSharperProfileChanges();
+        }
+        return importChanges(profile, rules, messages);
+    }
+
+    /**
+     * Same as {@link #importChanges(RulesProfile, Reader, ValidationMessages)}, for rules already parsed from a ReSharper
+     * file.
+     */
+    public ReSharperProfileChanges importChanges(RulesProfile profile, Collection<ReSharperRule> rules, ValidationMessages messages) {
+        ReSharperProfileChanges changes = new ReSharperProfileChanges();
+
+        Map<String, ActiveRule> activeRules = new HashMap<String, ActiveRule>();
+        for (ActiveRule activeRule : profile.getActiveRulesByRepository(getKey())) {
+            activeRules.put(activeRule.getRuleKey(), activeRule);
+        }
+
+        // like a full import, every listed IssueType is activated: Enabled describes the rule, not its activation.
+        // The repository is only queried when the file activates new rules
+        Map<String, Rule> repositoryRules = null;
+        Set<String> wantedRules = new HashSet<String>();
+        for (ReSharperRule reSharperRule : rules) {
+            String ruleKey = reSharperRule.getKey();
+            if (!wantedRules.add(ruleKey)) {
+                continue;
+            }
+            RulePriority sonarPriority = reSharperRule.getSonarPriority();
+            ActiveRule activeRule = activeRules.get(ruleKey);
+            if (activeRule != null) {
+                if (activeRule.getSeverity() != sonarPriority) {
+                    changes.changeSeverity(activeRule, sonarPriority);
+                }
+                continue;
+            }
+            if (repositoryRules == null) {
+                repositoryRules = findRepositoryRules();
+            }
+            Rule rule = repositoryRules.get(ruleKey);
+            if (rule != null) {
+                changes.activate(rule, sonarPriority);
+            } else {
+                messages.addWarningText("Unable to find rule for key '" + reSharperRule.getId() +"' in repository '"+getKey()+"'");
+            }
+        }
+
+        for (Map.Entry<String, ActiveRule> activeRule : activeRules.entrySet()) {
+            if (!wantedRules.contains(activeRule.getKey())) {
+                changes.deactivate(activeRule.getValue());
+            }
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Changes of profile " + profile.getName() + ": " + changes);
+        }
+        return changes;
+    }
+
+    /**
+     * Loads the rules of the repository in a single query, rather than one query per imported rule.
+     */
+    private Map<String, Rule> findRepositoryRules() {
+        Map<String, Rule> rulesByKey = new HashMap<String, Rule>();
+        for (Rule rule : ruleFinder.findAll(RuleQuery.create().withRepositoryKey(getKey()))) {
+            rulesByKey.put(rule.getKey(), rule);
+        }
+        return rulesByKey;
+    }
+
 }
@@ -31,6 +31,8 @@ import java.lang.Override;
  */
 public class ReSharperRule {
 
+    private static final String SOLUTION_WIDE_ANALYSIS_SUFFIX = ".Global";
+
     private String id;
     private boolean enabled;
     private String category;
@@ -38,17 +40,55 @@ public class ReSharperRule {
     private ReSharperSeverity severity;
     private String wikiLink;
 
+    /**
+     * HTML description rendered from the fields above, on first use. Registration always needs it, so this saves the
+     * rendering only for later callers: the other repository sharing a catalog rule, and repeated registrations.
+     */
+    private String htmlDescription;
+
+    /**
+     * Set on the rules of a {@link ReSharperRuleCatalog}, which are shared and cannot be modified
+     */
+    private boolean frozen;
+
     /**
      * Constructs a @link{ReSharperRule}.
      */
     public ReSharperRule() {
     }
 
+    /**
+     * Constructs a copy of the given @link{ReSharperRule}.
+     */
+    public ReSharperRule(ReSharperRule rule) {
+        // the copy can be modified, even if the rule cannot
+        this.id = rule.id;
+        this.enabled = rule.enabled;
+        this.category = rule.category;
+        this.description = rule.description;
+        this.severity = rule.severity;
+        this.wikiLink = rule.wikiLink;
+        this.htmlDescription = rule.htmlDescription;
+    }
+
     @Override
     public String toString() {
         return "ReSharperRule(id=" + id + ")";
     }
 
+    /**
+     * Prevents any further modification of this rule.
+     */
+    void freeze() {
+        frozen = true;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("The rules of a ReSharperRuleCatalog cannot be modified, copy them first: " + this);
+        }
+    }
+
 
     /**
      * Returns the id.
@@ -66,7 +106,9 @@ public class ReSharperRule {
      *          The id to set.
      */
     public void setId(String id) {
+        checkNotFrozen();
         this.id = id;
+        this.htmlDescription = null;
     }
 
     /**
@@ -85,6 +127,7 @@ public class ReSharperRule {
      *          The enabled to set.
      */
     public void setEnabled(boolean enabled) {
+        checkNotFrozen();
         this.enabled = enabled;
     }
 
@@ -104,7 +147,9 @@ public class ReSharperRule {
      *          The category to set.
      */
     public void setCategory(String category) {
+        checkNotFrozen();
         this.category = category;
+        this.htmlDescription = null;
     }
 
     /**
@@ -123,7 +168,9 @@ public class ReSharperRule {
      *          The description to set.
      */
     public void setDescription(String description) {
+        checkNotFrozen();
         this.description = description;
+        this.htmlDescription = null;
     }
 
     /**
@@ -142,7 +189,9 @@ public class ReSharperRule {
      *          The WikiLink to set.
      */
     public void setWikiLink(String wikiLink) {
+        checkNotFrozen();
         this.wikiLink = wikiLink;
+        this.htmlDescription = null;
     }
 
     /**
@@ -161,6 +210,7 @@ public class ReSharperRule {
      *          resharper severity
      */
     public void setSeverity(ReSharperSeverity severity) {
+        checkNotFrozen();
         this.severity = severity;
     }
 
@@ -254,6 +304,35 @@ public class ReSharperRule {
 //        </rule>
 
 
+        // Sonar persists the description at registration, so it cannot be deferred past this point
+        Rule sonarRule = Rule.create()
+                .setKey(getKey())
+                .setName(getId())
+                .setConfigKey("ReSharperInspectCode#" + getId())
+                .setDescription(getHtmlDescription())
+                .setSeverity(getSonarPriority());
+
+       return sonarRule;
+    }
+
+    /**
+     * Returns the description displayed by Sonar: the description, wiki link and category of the rule, as HTML. It is
+     * rendered the first time it is requested and kept until one of those fields changes. This does not make
+     * registration itself cheaper, since {@link #toSonarRule()} needs the description then; it saves the rendering for
+     * the repositories and registrations that follow, which share the catalog rules.
+     *
+     * @return the HTML description
+     */
+    public String getHtmlDescription() {
+        String html = htmlDescription;
+        if (html == null) {
+            html = renderHtmlDescription();
+            htmlDescription = html;
+        }
+        return html;
+    }
+
+    private String renderHtmlDescription() {
         //if the description is empty, the import of rules will
         //fail, so set the description to the id (name) if it doesn't exist
         String desc = getDescription();
@@ -262,24 +341,17 @@ public class ReSharperRule {
             desc = getId();
         }
 
+        StringBuilder html = new StringBuilder().append(desc);
         if (!StringUtils.isBlank(wikiLink))
         {
-            desc += "<br /><a href='"+wikiLink+"'>" + wikiLink + "</a>";
+            html.append("<br /><a href='").append(wikiLink).append("'>").append(wikiLink).append("</a>");
         }
 
         if (!StringUtils.isBlank(category))
         {
-            desc += "<br />(Category: "+category + ")";
+            html.append("<br />(Category: ").append(category).append(")");
         }
-
-        Rule sonarRule = Rule.create()
-                .setKey(getKey())
-                .setName(getId())
-                .setConfigKey("ReSharperInspectCode#" + getId())
-                .setDescription(desc)
-                .setSeverity(getSonarPriority());
-
-       return sonarRule;
+        return html.toString();
     }
 
     public static ReSharperRule createFromActiveRule(ActiveRule activeRule) {
@@ -317,4 +389,16 @@ public class ReSharperRule {
     	return getId().replaceAll(":", "_");
     }
 
+    /**
+     * Tells if the given IssueType is only reported when ReSharper runs its solution-wide analysis. These are the inspections
+     * of non-private symbol usages, whose ids end with ".Global" (ClassNeverInstantiated.Global, UnusedMember.Global...).
+     *
+     * @param id
+     *          the IssueType id
+     * @return true if the solution-wide analysis is needed
+     */
+    public static boolean requiresSolutionWideAnalysis(String id) {
+        return id != null && id.endsWith(SOLUTION_WIDE_ANALYSIS_SUFFIX);
+    }
+
 }
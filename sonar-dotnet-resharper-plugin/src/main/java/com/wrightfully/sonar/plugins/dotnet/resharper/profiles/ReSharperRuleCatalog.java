@@ -0,0 +1,204 @@
+/*
+ * Sonar .NET Plugin :: ReSharper
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.plugins.dotnet.resharper.profiles;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.utils.SonarException;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable set of ReSharper rules, indexed by IssueType id and by Sonar rule key. The catalog of the rules shipped with
+ * the plugin is parsed once per JVM, the first time it is needed, and shared by the rule repositories, the profile
+ * definitions, importers and exporters of every language. Its rules are shared too and cannot be modified: callers that
+ * need to modify a rule work on a copy made with {@link ReSharperRule#ReSharperRule(ReSharperRule)}.
+ */
+public final class ReSharperRuleCatalog {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReSharperRuleCatalog.class);
+
+    public static final String DEFAULT_RULES_RESOURCE = "/com/wrightfully/sonar/plugins/dotnet/resharper/rules/DefaultRules.ReSharper";
+
+    /**
+     * Binary form of {@link #DEFAULT_RULES_RESOURCE}, generated and checked at build time by ReSharperRuleCatalogCompiler,
+     * a build-only class.
+     */
+    public static final String COMPILED_DEFAULT_RULES_RESOURCE = DEFAULT_RULES_RESOURCE + ".bin";
+
+    static final int COMPILED_MAGIC = 0x52534852;
+    static final int COMPILED_FORMAT_VERSION = 1;
+
+    private final List<ReSharperRule> rules;
+    private final Map<String, ReSharperRule> rulesById;
+    private final Map<String, ReSharperRule> rulesByKey;
+
+    /**
+     * Lazy holder: the class loader guarantees the default catalog is parsed once, on first access, without locking.
+     */
+    private static final class DefaultCatalogHolder {
+        private static final ReSharperRuleCatalog INSTANCE = loadDefault();
+    }
+
+    private ReSharperRuleCatalog(Collection<ReSharperRule> rules) {
+        List<ReSharperRule> ruleList = new ArrayList<ReSharperRule>(rules.size());
+        Map<String, ReSharperRule> byId = new HashMap<String, ReSharperRule>();
+        Map<String, ReSharperRule> byKey = new HashMap<String, ReSharperRule>();
+        for (ReSharperRule rule : rules) {
+            if (byId.containsKey(rule.getId())) {
+                // first definition wins, as for the rules registered in Sonar
+                continue;
+            }
+            rule.freeze();
+            ruleList.add(rule);
+            byId.put(rule.getId(), rule);
+            byKey.put(rule.getKey(), rule);
+        }
+        this.rules = Collections.unmodifiableList(ruleList);
+        this.rulesById = byId;
+        this.rulesByKey = byKey;
+    }
+
+    /**
+     * @return the catalog of the rules shipped with the plugin
+     */
+    public static ReSharperRuleCatalog getDefault() {
+        return DefaultCatalogHolder.INSTANCE;
+    }
+
+    /**
+     * Creates a catalog of copies of the given rules. When several rules share the same id, the first one is kept.
+     */
+    public static ReSharperRuleCatalog create(Collection<ReSharperRule> rules) {
+        // the catalog keeps its own copies, out of reach of the caller
+        List<ReSharperRule> copies = new ArrayList<ReSharperRule>(rules.size());
+        for (ReSharperRule rule : rules) {
+            copies.add(new ReSharperRule(rule));
+        }
+        return new ReSharperRuleCatalog(copies);
+    }
+
+    /**
+     * Loads the rules shipped with the plugin from their compiled form, or from the XML file when the compiled resource is
+     * not available (e.g. when running from an IDE that does not execute the Maven build).
+     */
+    private static ReSharperRuleCatalog loadDefault() {
+        InputStream compiled = ReSharperRuleCatalog.class.getResourceAsStream(COMPILED_DEFAULT_RULES_RESOURCE);
+        if (compiled != null) {
+            try {
+                ReSharperRuleCatalog catalog = readCompiled(compiled);
+                LOG.debug("Loaded " + catalog.size() + " ReSharper rules from " + COMPILED_DEFAULT_RULES_RESOURCE);
+                return catalog;
+            } catch (IOException e) {
+                LOG.warn("Unable to read the compiled ReSharper rules, parsing " + DEFAULT_RULES_RESOURCE + " instead: " + e.getMessage());
+            } finally {
+                IOUtils.closeQuietly(compiled);
+            }
+        }
+        return load(DEFAULT_RULES_RESOURCE);
+    }
+
+    /**
+     * Reads a catalog written by ReSharperRuleCatalogCompiler.
+     *
+     * @param compiled
+     *          the compiled catalog
+     * @return the catalog
+     * @throws IOException
+     *           if the stream cannot be read or is not a compiled catalog of the current format
+     */
+    public static ReSharperRuleCatalog readCompiled(InputStream compiled) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(compiled));
+        if (in.readInt() != COMPILED_MAGIC || in.readInt() != COMPILED_FORMAT_VERSION) {
+            throw new IOException("not a compiled ReSharper rule catalog of format " + COMPILED_FORMAT_VERSION);
+        }
+        int count = in.readInt();
+        List<ReSharperRule> rules = new ArrayList<ReSharperRule>(count);
+        for (int i = 0; i < count; i++) {
+            ReSharperRule rule = new ReSharperRule();
+            rule.setId(in.readUTF());
+            rule.setEnabled(in.readBoolean());
+            rule.setCategory(in.readUTF());
+            rule.setDescription(in.readUTF());
+            rule.setWikiLink(in.readUTF());
+            try {
+                rule.setSeverity(ReSharperRule.ReSharperSeverity.valueOf(in.readUTF()));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("unknown severity of rule " + rule.getId());
+            }
+            rules.add(rule);
+        }
+        return new ReSharperRuleCatalog(rules);
+    }
+
+    private static ReSharperRuleCatalog load(String resource) {
+        InputStream stream = ReSharperRuleCatalog.class.getResourceAsStream(resource);
+        if (stream == null) {
+            throw new SonarException("Unable to find the ReSharper rules resource: " + resource);
+        }
+        try {
+            List<ReSharperRule> rules = ReSharperFileParser.parseRules(new InputStreamReader(stream, "UTF-8"));
+            LOG.debug("Loaded " + rules.size() + " ReSharper rules from " + resource);
+            return new ReSharperRuleCatalog(rules);
+        } catch (UnsupportedEncodingException e) {
+            throw new SonarException(e);
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+    }
+
+    /**
+     * @return the unmodifiable list of the rules, in definition order
+     */
+    public List<ReSharperRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * @return the rule of the given IssueType id, or null if unknown
+     */
+    public ReSharperRule getRuleById(String id) {
+        return rulesById.get(id);
+    }
+
+    /**
+     * @return the rule of the given Sonar rule key, or null if unknown
+     */
+    public ReSharperRule getRuleByKey(String key) {
+        return rulesByKey.get(key);
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+}
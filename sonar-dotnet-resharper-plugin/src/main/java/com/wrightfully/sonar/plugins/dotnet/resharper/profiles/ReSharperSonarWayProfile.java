@@ -23,8 +23,6 @@ import org.sonar.api.profiles.ProfileDefinition;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.utils.ValidationMessages;
 
-import java.io.InputStreamReader;
-
 public class ReSharperSonarWayProfile extends ProfileDefinition {
 
     private ReSharperProfileImporter profileImporter;
@@ -36,8 +34,7 @@ public class ReSharperSonarWayProfile extends ProfileDefinition {
     }
 
     public RulesProfile createProfile(ValidationMessages messages) {
-        RulesProfile profile = profileImporter.importProfile(
-                new InputStreamReader(getClass().getResourceAsStream("/com/wrightfully/sonar/plugins/dotnet/resharper/rules/DefaultRules.ReSharper")), messages);
+        RulesProfile profile = profileImporter.importRules(ReSharperRuleCatalog.getDefault().getRules(), messages);
         profile.setLanguage(languageKey);
         profile.setName("Sonar way");
         return profile;
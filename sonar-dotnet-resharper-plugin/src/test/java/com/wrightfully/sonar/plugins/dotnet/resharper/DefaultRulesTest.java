@@ -21,9 +21,13 @@ package com.wrightfully.sonar.plugins.dotnet.resharper;
 
 import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperFileParser;
 import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperRule;
+import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperRuleCatalog;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.List;
@@ -56,4 +60,76 @@ public class DefaultRulesTest {
     public void testDefaultRulesContainsSpecialUnknownTypeRule() throws Exception {
         assertThat(_rules).onProperty("id").contains("Sonar.UnknownIssueType");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testDefaultCatalogIsSharedAndIndexed() throws Exception {
+        ReSharperRuleCatalog catalog = ReSharperRuleCatalog.getDefault();
+
+        assertThat(ReSharperRuleCatalog.getDefault()).isSameAs(catalog);
+        assertThat(catalog.size()).isEqualTo(_rules.size());
+        assertThat(catalog.getRuleById("Sonar.UnknownIssueType").getKey()).isEqualTo("Sonar.UnknownIssueType");
+        assertThat(catalog.getRuleByKey(_rules.get(0).getKey()).getId()).isEqualTo(_rules.get(0).getId());
+        assertThat(catalog.getRuleById("NotAReSharperRule")).isNull();
+    }
+
+    @Test
+    public void testCatalogKeepsItsOwnRules() throws Exception {
+        ReSharperRuleCatalog catalog = ReSharperRuleCatalog.create(_rules);
+        String id = _rules.get(0).getId();
+        ReSharperRule.ReSharperSeverity severity = catalog.getRuleById(id).getSeverity();
+
+        _rules.get(0).setSeverity(severity == ReSharperRule.ReSharperSeverity.ERROR
+            ? ReSharperRule.ReSharperSeverity.HINT : ReSharperRule.ReSharperSeverity.ERROR);
+
+        assertThat(catalog.getRuleById(id).getSeverity()).isEqualTo(severity);
+        // the rules are shared rather than copied on each call
+        assertThat(catalog.getRules()).isSameAs(catalog.getRules());
+        assertThat(catalog.getRuleById(id)).isSameAs(catalog.getRules().get(0));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCatalogRulesCannotBeModified() throws Exception {
+        ReSharperRuleCatalog.getDefault().getRules().get(0).setSeverity(ReSharperRule.ReSharperSeverity.ERROR);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCatalogRuleListCannotBeModified() throws Exception {
+        ReSharperRuleCatalog.getDefault().getRules().clear();
+    }
+
+    @Test
+    public void testCopiesOfCatalogRulesCanBeModified() throws Exception {
+        ReSharperRule rule = new ReSharperRule(ReSharperRuleCatalog.getDefault().getRuleById("Sonar.UnknownIssueType"));
+        rule.setSeverity(ReSharperRule.ReSharperSeverity.ERROR);
+
+        assertThat(rule.getSeverity()).isEqualTo(ReSharperRule.ReSharperSeverity.ERROR);
+    }
+
+    @Test
+    public void testCompiledResourceMatchesXmlSource() throws Exception {
+        // generated and checked by the Maven build at process-classes
+        InputStream compiled = getClass().getResourceAsStream(ReSharperRuleCatalog.COMPILED_DEFAULT_RULES_RESOURCE);
+        assertThat(compiled).isNotNull();
+        try {
+            assertSameRules(ReSharperRuleCatalog.readCompiled(compiled).getRules(), _rules);
+        } finally {
+            IOUtils.closeQuietly(compiled);
+        }
+        assertSameRules(ReSharperRuleCatalog.getDefault().getRules(), _rules);
+    }
+
+    private static void assertSameRules(List<ReSharperRule> actual, List<ReSharperRule> expected) {
+        assertThat(actual).hasSize(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            ReSharperRule expectedRule = expected.get(i);
+            ReSharperRule actualRule = actual.get(i);
+            assertThat(actualRule.getId()).isEqualTo(expectedRule.getId());
+            assertThat(actualRule.isEnabled()).as(expectedRule.getId()).isEqualTo(expectedRule.isEnabled());
+            assertThat(actualRule.getCategory()).as(expectedRule.getId()).isEqualTo(StringUtils.defaultString(expectedRule.getCategory()));
+            assertThat(actualRule.getDescription()).as(expectedRule.getId()).isEqualTo(StringUtils.defaultString(expectedRule.getDescription()));
+            assertThat(actualRule.getWikiLink()).as(expectedRule.getId()).isEqualTo(StringUtils.defaultString(expectedRule.getWikiLink()));
+            assertThat(actualRule.getSeverity()).as(expectedRule.getId()).isEqualTo(expectedRule.getSeverity());
+            assertThat(actualRule.getKey()).isEqualTo(expectedRule.getKey());
+        }
+    }
+}
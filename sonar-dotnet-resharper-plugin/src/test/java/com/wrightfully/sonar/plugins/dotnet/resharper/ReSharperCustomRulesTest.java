@@ -0,0 +1,89 @@
+/*
+ * Sonar .NET Plugin :: ReSharper
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.plugins.dotnet.resharper;
+
+import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperRule;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+
+public class ReSharperCustomRulesTest {
+
+    private static final String FIRST = "<IssueType Id=\"MyCompany.First\" Category=\"Custom\" Description=\"First\" Severity=\"HINT\" />";
+    private static final String SECOND = "<IssueType Id=\"MyCompany.Second\" Category=\"Custom\" Description=\"Second\" Severity=\"WARNING\"></IssueType>";
+
+    private ReSharperCustomRules customRules;
+
+    @Before
+    public void init() {
+        customRules = new ReSharperCustomRules();
+    }
+
+    @Test
+    public void testUnchangedDefinitionsAreNotParsedAgain() {
+        List<ReSharperRule> first = customRules.parse(FIRST + "\n" + SECOND);
+        List<ReSharperRule> second = customRules.parse(FIRST + "\n" + SECOND);
+
+        assertThat(first).onProperty("id").containsExactly("MyCompany.First", "MyCompany.Second");
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void testOnlyChangedDefinitionsAreParsedAgain() {
+        List<ReSharperRule> before = customRules.parse(FIRST + SECOND);
+        String modified = SECOND.replace("WARNING", "ERROR");
+        String added = "<IssueType Id=\"MyCompany.Third\" Category=\"Custom\" Description=\"Third\" Severity=\"HINT\" />";
+
+        List<ReSharperRule> after = customRules.parse(added + FIRST + modified);
+
+        assertThat(after).onProperty("id").containsExactly("MyCompany.Third", "MyCompany.First", "MyCompany.Second");
+        assertThat(after.get(1)).isSameAs(before.get(0));
+        assertThat(after.get(2)).isNotSameAs(before.get(1));
+        assertThat(after.get(2).getSeverity()).isEqualTo(ReSharperRule.ReSharperSeverity.ERROR);
+    }
+
+    @Test
+    public void testOtherValuesAreParsedAsAWhole() {
+        List<ReSharperRule> rules = customRules.parse("<!-- ours -->" + FIRST);
+
+        assertThat(rules).onProperty("id").containsExactly("MyCompany.First");
+    }
+
+    @Test
+    public void testSplitDisagreeingWithTheParserFallsBackToTheParser() {
+        // the split sees one element, the parser two
+        String nested = "<IssueType Id=\"MyCompany.Outer\" Severity=\"HINT\"><IssueType Id=\"MyCompany.Inner\" Severity=\"HINT\" /></IssueType>";
+
+        List<ReSharperRule> rules = customRules.parse(nested);
+
+        assertThat(rules).onProperty("id").containsExactly("MyCompany.Outer", "MyCompany.Inner");
+    }
+
+    @Test
+    public void testMalformedValueHasNoRule() {
+        customRules.parse(FIRST);
+
+        assertThat(customRules.parse(FIRST + "<IssueType Id=\"MyCompany.Broken\" >")).isEmpty();
+    }
+}
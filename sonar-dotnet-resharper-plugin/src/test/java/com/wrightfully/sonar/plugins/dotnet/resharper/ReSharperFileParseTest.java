@@ -202,4 +202,48 @@ public class ReSharperFileParseTest {
         assertThat(messages.hasInfos()).isFalse();
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testLargeCatalogIsStreamedToHandler() throws Exception {
+
+        //Arrange
+        StringBuilder fileValue = new StringBuilder("<Results><IssueTypes>");
+        for (int i = 0; i < 20000; i++) {
+            fileValue.append("<IssueType Id=\"GeneratedRule").append(i).append("\" Category=\"Generated\" Description=\"Generated rule\" Severity=\"WARNING\" />\n");
+        }
+        fileValue.append("</IssueTypes></Results>");
+        ValidationMessages messages = ValidationMessages.create();
+        final List<String> ids = new ArrayList<String>();
+
+        //Act
+        boolean parsed = ReSharperFileParser.parseRules(new StringReader(fileValue.toString()), messages, new ReSharperFileParser.RuleHandler() {
+            public void onRule(ReSharperRule rule) {
+                ids.add(rule.getId());
+            }
+        });
+
+        //Assert
+        assertThat(parsed).isTrue();
+        assertThat(messages.hasErrors()).isFalse();
+        assertThat(ids).hasSize(20000);
+        assertThat(ids.get(19999)).isEqualTo("GeneratedRule19999");
+    }
+
+    @Test
+    public void testTruncatedFileReturnsNoRules() throws Exception {
+
+        //Arrange
+        String fileValue = "<Results><IssueTypes>" +
+                "<IssueType Id=\"UnassignedField.Compiler\" Category=\"Compiler Warnings\" Description=\"Unassigned field\" Severity=\"WARNING\" />" +
+                "<IssueType Id=\"Trunc";
+        ValidationMessages messages = ValidationMessages.create();
+
+        //Act
+        List<ReSharperRule> results = ReSharperFileParser.parseRules(new StringReader(fileValue), messages);
+
+        //Assert
+        assertThat(results).isEmpty();
+        assertThat(messages.getErrors()).hasSize(1);
+        assertThat((String)(messages.getErrors().toArray()[0])).startsWith("xpath exception while parsing resharper config file");
+    }
+}
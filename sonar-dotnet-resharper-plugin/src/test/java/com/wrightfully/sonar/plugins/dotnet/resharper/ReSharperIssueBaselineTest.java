@@ -0,0 +1,138 @@
+/*
+ * Sonar .NET Plugin :: ReSharper
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.plugins.dotnet.resharper;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.test.TestUtils;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperIssueBaselineTest {
+
+    private File workDir;
+    private ReSharperIssueFingerprinter fingerprinter;
+
+    @Before
+    public void init() throws Exception {
+        workDir = TestUtils.getTestTempDir(getClass(), "workDir");
+        FileUtils.writeStringToFile(new File(workDir, "Example/Program.cs"), "using System;\n\nclass Program {\n  int unused;\n}\n", "UTF-8");
+        fingerprinter = new ReSharperIssueFingerprinter(workDir, Charset.forName("UTF-8"));
+    }
+
+    @Test
+    public void testFingerprintIgnoresLayoutChanges() throws Exception {
+        long fingerprint = fingerprinter.fingerprint("UnusedMember.Local", "Example\\Program.cs", "Field 'unused' is never used", "4");
+
+        FileUtils.writeStringToFile(new File(workDir, "Example/Program.cs"), "using System;\nclass Program\n{\n\n    int   unused;\n}\n", "UTF-8");
+        ReSharperIssueFingerprinter moved = new ReSharperIssueFingerprinter(workDir, Charset.forName("UTF-8"));
+
+        assertThat(moved.fingerprint("UnusedMember.Local", "Example/Program.cs", "  Field 'unused'  is never used", "5")).isEqualTo(fingerprint);
+        assertThat(moved.fingerprint("UnusedMember.Local", "Example/Program.cs", "Field 'unused' is never used", "1")).isNotEqualTo(fingerprint);
+        assertThat(moved.fingerprint("UnusedMember.Global", "Example/Program.cs", "Field 'unused' is never used", "5")).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    public void testWrittenBaselineIsSearchable() throws Exception {
+        long[] fingerprints = new long[10000];
+        for (int i = 0; i < fingerprints.length; i++) {
+            fingerprints[i] = (i * 0x9e3779b97f4a7c15L) | 1;
+        }
+        File baselineFile = new File(workDir, "baseline.bin");
+        ReSharperIssueBaseline.write(fingerprints, baselineFile);
+
+        ReSharperIssueBaseline baseline = ReSharperIssueBaseline.load(baselineFile);
+
+        assertThat(baseline.size()).isEqualTo(fingerprints.length);
+        for (long fingerprint : fingerprints) {
+            assertThat(baseline.contains(fingerprint)).isTrue();
+            assertThat(baseline.contains(fingerprint & ~1L)).isFalse();
+        }
+    }
+
+    @Test
+    public void testDuplicateIssuesKeepTheirCount() throws Exception {
+        File baselineFile = new File(workDir, "baseline.bin");
+        ReSharperIssueBaseline.write(new long[] {7L, 3L, 7L, 5L, 7L, 3L}, baselineFile);
+
+        ReSharperIssueBaseline baseline = ReSharperIssueBaseline.load(baselineFile);
+
+        assertThat(baseline.size()).isEqualTo(6);
+        assertThat(baseline.count(3L)).isEqualTo(2);
+        assertThat(baseline.count(5L)).isEqualTo(1);
+        assertThat(baseline.count(7L)).isEqualTo(3);
+        assertThat(baseline.count(4L)).isEqualTo(0);
+        assertThat(baseline.count(8L)).isEqualTo(0);
+    }
+
+    @Test
+    public void testOccurrencesBeyondTheBaselineCountAreNotMatched() throws Exception {
+        File baselineFile = new File(workDir, "baseline.bin");
+        ReSharperIssueBaseline.write(new long[] {7L, 3L, 7L}, baselineFile);
+        ReSharperIssueBaseline baseline = ReSharperIssueBaseline.load(baselineFile);
+
+        ReSharperIssueBaseline.Occurrences occurrences = baseline.newOccurrences();
+        assertThat(occurrences.match(7L)).isTrue();
+        assertThat(occurrences.match(3L)).isTrue();
+        assertThat(occurrences.isExhausted()).isFalse();
+        assertThat(occurrences.match(7L)).isTrue();
+        assertThat(occurrences.isExhausted()).isTrue();
+        assertThat(occurrences.match(7L)).isFalse();
+        assertThat(occurrences.match(3L)).isFalse();
+        assertThat(occurrences.match(5L)).isFalse();
+
+        // another report is matched from scratch
+        assertThat(baseline.newOccurrences().match(3L)).isTrue();
+    }
+
+    @Test
+    public void testFirstVersionBaselinesCountEachIssueOnce() throws Exception {
+        File baselineFile = new File(workDir, "baseline.bin");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(baselineFile));
+        try {
+            out.writeInt(ReSharperIssueBaseline.MAGIC);
+            out.writeInt(1);
+            out.writeLong(3L);
+            out.writeLong(7L);
+        } finally {
+            out.close();
+        }
+
+        ReSharperIssueBaseline baseline = ReSharperIssueBaseline.load(baselineFile);
+
+        assertThat(baseline.count(3L)).isEqualTo(1);
+        assertThat(baseline.count(7L)).isEqualTo(1);
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidBaselineIsRejected() throws Exception {
+        File baselineFile = new File(workDir, "baseline.bin");
+        FileUtils.writeStringToFile(baselineFile, "not a baseline!");
+        ReSharperIssueBaseline.load(baselineFile);
+    }
+
+}
@@ -95,6 +95,58 @@ public class ReSharperProfileExporterTest {
         TestUtils.assertSimilarXml(expectedValue, createdValue);
     }
 
+    @Test
+    public void testExportDotSettings() {
+        RulesProfile profile = RulesProfile.create("Sonar way", "cs");
+        profile.activateRule(Rule.create(ReSharperConstants.REPOSITORY_KEY+"-cs", "ClassNeverInstantiated.Global", "ClassNeverInstantiated.Global")
+                .setConfigKey("ReSharperInspectCode#ClassNeverInstantiated.Global"), RulePriority.MINOR);
+        profile.activateRule(Rule.create(ReSharperConstants.REPOSITORY_KEY+"-cs", "CSharpWarnings__CS0162", "CSharpWarnings::CS0162")
+                .setConfigKey("ReSharperInspectCode#CSharpWarnings::CS0162"), RulePriority.BLOCKER);
+        StringWriter writer = new StringWriter();
+        ReSharperProfileExporter exporter = new ReSharperProfileExporter.CSharpRegularReSharperProfileExporter();
+
+        exporter.exportDotSettings(profile, writer);
+
+        String createdValue = writer.toString();
+        assertThat(createdValue).startsWith("<wpf:ResourceDictionary ");
+        assertThat(createdValue).contains("<s:String x:Key=\"/Default/CodeInspection/Highlighting/InspectionSeverities/=ClassNeverInstantiated_002EGlobal/@EntryIndexedValue\">SUGGESTION</s:String>");
+        assertThat(createdValue).contains("<s:String x:Key=\"/Default/CodeInspection/Highlighting/InspectionSeverities/=CSharpWarnings_003A_003ACS0162/@EntryIndexedValue\">ERROR</s:String>");
+        assertThat(createdValue).contains("<s:String x:Key=\"/Default/CodeInspection/Highlighting/InspectionSeverities/=AccessToDisposedClosure/@EntryIndexedValue\">DO_NOT_SHOW</s:String>");
+    }
+
+    @Test
+    public void testRepeatedExportFollowsProfileChanges() {
+        RulesProfile profile = RulesProfile.create("Sonar way", "cs");
+        ActiveRule activeRule = profile.activateRule(Rule.create(ReSharperConstants.REPOSITORY_KEY+"-cs", "ClassNeverInstantiated.Global", "ClassNeverInstantiated.Global")
+                .setDescription("Class is never instantiated: Non-private accessibility")
+                .setConfigKey("ReSharperInspectCode#ClassNeverInstantiated.Global"), RulePriority.MINOR);
+        ReSharperProfileExporter exporter = new ReSharperProfileExporter.CSharpRegularReSharperProfileExporter();
+
+        StringWriter first = new StringWriter();
+        exporter.exportProfile(profile, first);
+        StringWriter second = new StringWriter();
+        exporter.exportProfile(profile, second);
+        activeRule.setSeverity(RulePriority.BLOCKER);
+        StringWriter third = new StringWriter();
+        exporter.exportProfile(profile, third);
+
+        assertThat(second.toString()).isEqualTo(first.toString());
+        assertThat(first.toString()).contains("Severity=\"SUGGESTION\"");
+        assertThat(third.toString()).contains("Severity=\"ERROR\"");
+
+        activeRule.getRule().setDescription("Class is never instantiated");
+        StringWriter fourth = new StringWriter();
+        exporter.exportProfile(profile, fourth);
+        profile.activateRule(Rule.create(ReSharperConstants.REPOSITORY_KEY+"-cs", "CSharpWarnings__CS0162", "CSharpWarnings::CS0162")
+                .setConfigKey("ReSharperInspectCode#CSharpWarnings::CS0162"), RulePriority.INFO);
+        StringWriter fifth = new StringWriter();
+        exporter.exportProfile(profile, fifth);
+
+        assertThat(fourth.toString()).contains("Description=\"Class is never instantiated\"");
+        assertThat(fourth.toString()).excludes("CSharpWarnings::CS0162");
+        assertThat(fifth.toString()).contains("Id=\"CSharpWarnings::CS0162\"");
+    }
+
     @Test
     public void testExporterForVbNet() {
         ReSharperProfileExporter exporter = new ReSharperProfileExporter.VbNetRegularReSharperProfileExporter();
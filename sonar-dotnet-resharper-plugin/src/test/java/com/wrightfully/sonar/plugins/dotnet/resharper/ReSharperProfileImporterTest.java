@@ -19,6 +19,7 @@
  */
 package com.wrightfully.sonar.plugins.dotnet.resharper;
 
+import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperProfileChanges;
 import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperProfileImporter;
 
 import org.sonar.api.utils.ValidationMessages;
@@ -54,6 +55,7 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.Collection;
 
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -121,50 +123,99 @@ public class ReSharperProfileImporterTest {
         assertThat(profile.getActiveRules().get(0).getRepositoryKey()).isEqualTo(ReSharperConstants.REPOSITORY_KEY+"-vbnet");
     }
 
+    @Test
+    public void testImportChangesOnlyReturnsDifferences() {
+        RuleFinder ruleFinder = newRuleFinder();
+        importer = new ReSharperProfileImporter.CSharpRegularReSharperProfileImporter(ruleFinder);
+        String repositoryKey = ReSharperConstants.REPOSITORY_KEY + "-cs";
+        RulesProfile profile = RulesProfile.create("Sonar way", "cs");
+        profile.activateRule(Rule.create(repositoryKey, "ClassNeverInstantiated.Global", "ClassNeverInstantiated.Global"), RulePriority.MINOR);
+        profile.activateRule(Rule.create(repositoryKey, "MemberCanBeMadeStatic.Global", "MemberCanBeMadeStatic.Global"), RulePriority.MINOR);
+        profile.activateRule(Rule.create(repositoryKey, "CSharpWarnings__CS0162", "CSharpWarnings::CS0162"), RulePriority.INFO);
+
+        Reader reader = new StringReader("<Report><IssueTypes>" +
+                "<IssueType Id=\"ClassNeverInstantiated.Global\" Enabled=\"true\" Severity=\"SUGGESTION\" />" +
+                "<IssueType Id=\"MemberCanBeMadeStatic.Global\" Enabled=\"true\" Severity=\"ERROR\" />" +
+                "<IssueType Id=\"ClassWithVirtualMembersNeverInherited.Global\" Severity=\"WARNING\" />" +
+                "</IssueTypes></Report>");
+        ReSharperProfileChanges changes = importer.importChanges(profile, reader, messages);
+
+        assertThat(messages.hasWarnings()).isFalse();
+        assertThat(changes.getActivations()).hasSize(1);
+        assertThat(changes.getActivations().get(0).getRule().getKey()).isEqualTo("ClassWithVirtualMembersNeverInherited.Global");
+        assertThat(changes.getDeactivations()).onProperty("ruleKey").containsOnly("CSharpWarnings__CS0162");
+        assertThat(changes.getSeverityChanges()).hasSize(1);
+        assertThat(changes.getSeverityChanges().get(0).getSeverity()).isEqualTo(RulePriority.BLOCKER);
+
+        changes.applyTo(profile);
+
+        assertThat(profile.getActiveRules()).onProperty("ruleKey").containsOnly("ClassNeverInstantiated.Global",
+                "MemberCanBeMadeStatic.Global", "ClassWithVirtualMembersNeverInherited.Global");
+        assertThat(profile.getActiveRule(repositoryKey, "MemberCanBeMadeStatic.Global").getSeverity()).isEqualTo(RulePriority.BLOCKER);
+        assertThat(profile.getActiveRule(repositoryKey, "ClassWithVirtualMembersNeverInherited.Global").getSeverity()).isEqualTo(RulePriority.CRITICAL);
+    }
+
+    @Test
+    public void testImportChangesOfUnchangedProfileIsEmpty() {
+        RuleFinder ruleFinder = newRuleFinder();
+        importer = new ReSharperProfileImporter.CSharpRegularReSharperProfileImporter(ruleFinder);
+        RulesProfile profile = importer.importProfile(
+                new StringReader(TestUtils.getResourceContent("/ProfileExporter/SimpleRules.ReSharper.exported.xml")), messages);
+
+        ReSharperProfileChanges changes = importer.importChanges(profile,
+                new StringReader(TestUtils.getResourceContent("/ProfileExporter/SimpleRules.ReSharper.exported.xml")), messages);
+
+        assertThat(changes.isEmpty()).isTrue();
+        verify(ruleFinder, times(1)).findAll((RuleQuery) anyObject());
+    }
+
+    @Test
+    public void testImportChangesOfUnreadableFileChangesNothing() {
+        importer = new ReSharperProfileImporter.CSharpRegularReSharperProfileImporter(newRuleFinder());
+        RulesProfile profile = RulesProfile.create("Sonar way", "cs");
+        profile.activateRule(Rule.create(ReSharperConstants.REPOSITORY_KEY + "-cs", "MemberCanBeMadeStatic.Global", "MemberCanBeMadeStatic.Global"), RulePriority.MINOR);
+
+        ReSharperProfileChanges changes = importer.importChanges(profile, new StringReader("<Report><IssueTypes>"), messages);
+
+        assertThat(messages.hasErrors()).isTrue();
+        assertThat(changes.isEmpty()).isTrue();
+    }
+
     private RuleFinder newRuleFinder() {
         RuleFinder ruleFinder = mock(RuleFinder.class);
-        when(ruleFinder.find((RuleQuery) anyObject())).thenAnswer(new Answer<Rule>() {
+        when(ruleFinder.findAll((RuleQuery) anyObject())).thenAnswer(new Answer<Collection<Rule>>() {
 
-            public Rule answer(InvocationOnMock iom) throws Throwable {
+            public Collection<Rule> answer(InvocationOnMock iom) throws Throwable {
                 RuleQuery query = (RuleQuery) iom.getArguments()[0];
-                Rule rule = null;
-                String configKey=query.getConfigKey();
-                String ruleKey=query.getKey();
-                if (StringUtils.equals(configKey, "ReSharperInspectCode#ClassNeverInstantiated.Global")
-                        || StringUtils.equals(ruleKey, "ClassNeverInstantiated.Global")) {
-                    rule = Rule.create(query.getRepositoryKey(), "ClassNeverInstantiated.Global", "ClassNeverInstantiated.Global")
+                String repositoryKey = query.getRepositoryKey();
+                return Lists.newArrayList(
+                        Rule.create(repositoryKey, "ClassNeverInstantiated.Global", "ClassNeverInstantiated.Global")
                             .setDescription("Class is never instantiated: Non-private accessibility<br />(Category: Potential Code Quality Issues)")
-                            .setConfigKey("ReSharperInspectCode#ClassNeverInstantiated.Global");
-
-                } else if (StringUtils.equals(configKey, "ReSharperInspectCode#ClassWithVirtualMembersNeverInherited.Global")
-                        || StringUtils.equals(ruleKey, "ClassWithVirtualMembersNeverInherited.Global")) {
-                    rule = Rule.create(query.getRepositoryKey(), "ClassWithVirtualMembersNeverInherited.Global", "ClassWithVirtualMembersNeverInherited.Global")
+                            .setConfigKey("ReSharperInspectCode#ClassNeverInstantiated.Global"),
+                        Rule.create(repositoryKey, "ClassWithVirtualMembersNeverInherited.Global", "ClassWithVirtualMembersNeverInherited.Global")
                             .setDescription("Class with virtual(overridable) members never inherited: Non-private accessibility<br />(Category: Redundancies in Symbol Declarations)")
-                            .setConfigKey("ReSharperInspectCode#ClassWithVirtualMembersNeverInherited.Global");
-
-                } else if (StringUtils.equals(configKey, "ReSharperInspectCode#MemberCanBeMadeStatic.Global")
-                        || StringUtils.equals(ruleKey, "MemberCanBeMadeStatic.Global")) {
-                    rule = Rule.create(query.getRepositoryKey(), "MemberCanBeMadeStatic.Global", "MemberCanBeMadeStatic.Global")
+                            .setConfigKey("ReSharperInspectCode#ClassWithVirtualMembersNeverInherited.Global"),
+                        Rule.create(repositoryKey, "MemberCanBeMadeStatic.Global", "MemberCanBeMadeStatic.Global")
                             .setDescription("Member can be made static(shared): Non-private accessibility<br />(Category: Common Practices and Code Improvements)")
-                            .setConfigKey("ReSharperInspectCode#MemberCanBeMadeStatic.Global");
-
-                } else if (StringUtils.equals(configKey, "ReSharperInspectCode#MemberCanBeMadeStatic.Global")
-                        || StringUtils.equals(ruleKey, "MemberCanBeMadeStatic.Global")) {
-                    rule = Rule.create(query.getRepositoryKey(), "MemberCanBeMadeStatic.Global", "MemberCanBeMadeStatic.Global")
-                            .setDescription("Member can be made static(shared): Non-private accessibility<br />(Category: Common Practices and Code Improvements)")
-                            .setConfigKey("ReSharperInspectCode#MemberCanBeMadeStatic.Global");
-                } else if (StringUtils.equals(configKey, "ReSharperInspectCode#CSharpWarnings::CS0162")
-                            || StringUtils.equals(ruleKey, "CSharpWarnings__CS0162")) {
-                        rule = Rule.create(query.getRepositoryKey(), "CSharpWarnings__CS0162", "CSharpWarnings::CS0162")
-                                .setDescription("CS0162:Code is unreachable(Category: Compiler Warnings)")
-                                .setConfigKey("ReSharperInspectCode#CSharpWarnings::CS0162");
-                }
-                return rule;
+                            .setConfigKey("ReSharperInspectCode#MemberCanBeMadeStatic.Global"),
+                        Rule.create(repositoryKey, "CSharpWarnings__CS0162", "CSharpWarnings::CS0162")
+                            .setDescription("CS0162:Code is unreachable(Category: Compiler Warnings)")
+                            .setConfigKey("ReSharperInspectCode#CSharpWarnings::CS0162"));
             }
         });
         return ruleFinder;
     }
 
+    @Test
+    public void testRepositoryRulesAreLoadedOnce() {
+        RuleFinder ruleFinder = newRuleFinder();
+        importer = new ReSharperProfileImporter.CSharpRegularReSharperProfileImporter(ruleFinder);
+
+        Reader reader = new StringReader(TestUtils.getResourceContent("/ProfileExporter/SimpleRules.ReSharper.exported.xml"));
+        importer.importProfile(reader, messages);
 
+        verify(ruleFinder, times(1)).findAll((RuleQuery) anyObject());
+        verify(ruleFinder, never()).find((RuleQuery) anyObject());
+    }
 
 }
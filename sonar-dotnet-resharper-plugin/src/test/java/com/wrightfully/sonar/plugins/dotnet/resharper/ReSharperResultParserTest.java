@@ -20,6 +20,11 @@
 package com.wrightfully.sonar.plugins.dotnet.resharper;
 
 import com.google.common.collect.Lists;
+import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperRule;
+import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperRuleCatalog;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
@@ -35,6 +40,7 @@ import org.sonar.api.rules.Violation;
 import org.sonar.plugins.dotnet.api.DotNetResourceBridge;
 import org.sonar.plugins.dotnet.api.DotNetResourceBridges;
 import org.sonar.plugins.dotnet.api.microsoft.MicrosoftWindowsEnvironment;
+import org.sonar.plugins.dotnet.api.microsoft.SourceFile;
 import org.sonar.plugins.dotnet.api.microsoft.VisualStudioProject;
 import org.sonar.plugins.dotnet.api.microsoft.VisualStudioSolution;
 import org.sonar.plugins.dotnet.api.utils.ResourceHelper;
@@ -42,8 +48,18 @@ import org.sonar.test.TestUtils;
 import org.mockito.ArgumentCaptor;
 
 import java.lang.Throwable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.lang.Exception;
 import java.nio.charset.Charset;
 
@@ -308,6 +324,60 @@ public class ReSharperResultParserTest {
 
 
 
+    @Test
+    public void testFilesMatchingExclusionPatternsAreSkippedWithoutResolvingResources() throws Exception {
+
+        when(_project.getExclusionPatterns()).thenReturn(new String[] {"Example.Application/**"});
+        ConfigureState(true, false, true);
+
+        File resultFile = TestUtils.getResource("/solution/Example/resharper-results-example_sln.xml");
+        _parser.parse(resultFile);
+
+        verify(_context, never()).isExcluded(any(Resource.class));
+        verify(_context, never()).saveViolation(any(Violation.class));
+    }
+
+    @Test
+    public void testExclusionPatternsAreMatchedAsBySonar() throws Exception {
+        String[] patterns = {"[root]/Setup.cs", "Setup.cs", "*.cs", "**/Setup.cs", "Example.Application/*.cs", "**/Generated/**",
+            "Example.Application/**/*.Designer.cs", "**/*Test*"};
+        String[] keys = {"Setup.cs", "Example.Application/Setup.cs", "Example.Application/Generated/Setup.Designer.cs"};
+        for (String key : keys) {
+            for (String pattern : patterns) {
+                boolean excludedBySonar = new org.sonar.api.resources.File(key).matchFilePattern(pattern);
+                assertThat(isSkippedWithoutResolvingResources(pattern, key.replace('/', '\\'))).as(pattern + " " + key).isEqualTo(excludedBySonar);
+            }
+        }
+    }
+
+    /**
+     * Parses a report of a single issue, located in the given file of the solution, and tells if the file was excluded
+     * by the given pattern.
+     */
+    private boolean isSkippedWithoutResolvingResources(String exclusionPattern, String filePath) throws Exception {
+        _context = mock(SensorContext.class);
+        final List<Resource> resolvedResources = new ArrayList<Resource>();
+        when(_context.isExcluded(any(Resource.class))).thenAnswer(new Answer<Boolean>() {
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                resolvedResources.add((Resource) invocation.getArguments()[0]);
+                return false;
+            }
+        });
+        when(_project.getExclusionPatterns()).thenReturn(new String[] {exclusionPattern});
+        when(_vsProject.contains(any(File.class))).thenReturn(true);
+        _parser = new ReSharperResultParser(_env, _project, _context, newRuleFinder(), mock(ReSharperConfiguration.class));
+
+        File resultFile = new File(TestUtils.getTestTempDir(getClass(), "exclusions"), "resharper-results.xml");
+        FileUtils.writeStringToFile(resultFile, "<Report ToolsVersion=\"8.0\"><IssueTypes>"
+                + "<IssueType Id=\"RedundantUsingDirective\" Category=\"Redundancies in Code\" Description=\"Redundant using directive\" Severity=\"WARNING\" />"
+                + "</IssueTypes><Issues><Project Name=\"Example.Application\">"
+                + "<Issue TypeId=\"RedundantUsingDirective\" File=\"" + filePath + "\" Offset=\"10-20\" Line=\"2\" Message=\"Using directive is not required\" />"
+                + "</Project></Issues></Report>", "UTF-8");
+        _parser.parse(resultFile);
+
+        return resolvedResources.isEmpty();
+    }
+
     @Test
     public void testParseFileWithUnknownRules() throws Exception {
 
@@ -342,6 +412,304 @@ public class ReSharperResultParserTest {
 
     }
 
+    @Test
+    public void testUnknownRulesAreLookedUpOncePerAnalysisAndRemembered() throws Exception {
+
+        ConfigureState(true, false, true);
+        File workDir = TestUtils.getTestTempDir(getClass(), "unknownIssueTypes");
+        when(_project.getFileSystem().getSonarWorkingDirectory()).thenReturn(workDir);
+        ReSharperConfiguration configuration = mock(ReSharperConfiguration.class);
+        when(configuration.getBoolean(ReSharperConstants.INCLUDE_ALL_FILES)).thenReturn(true);
+        File resultFile = TestUtils.getResource("/solution/Example/resharper-results-example_sln-missing.xml");
+
+        RuleFinder firstRuleFinder = newRuleFinder();
+        new ReSharperResultParser(_env, _project, _context, firstRuleFinder, configuration).parse(resultFile);
+
+        RuleFinder secondRuleFinder = newRuleFinder();
+        new ReSharperResultParser(_env, _project, _context, secondRuleFinder, configuration).parse(resultFile);
+
+        // the types declared by the report are resolved at once, Sonar.UnknownIssueType is looked up on its own
+        verify(firstRuleFinder, times(1)).findAll((RuleQuery) anyObject());
+        verify(firstRuleFinder, times(1)).find((RuleQuery) anyObject());
+        verify(secondRuleFinder, times(1)).findAll((RuleQuery) anyObject());
+        verify(secondRuleFinder, times(1)).find((RuleQuery) anyObject());
+        verify(_context, times(2)).saveViolation(any(Violation.class));
+        assertThat(FileUtils.readFileToString(new File(workDir, ReSharperUnknownIssueTypes.FILENAME), "UTF-8")).contains("UnknownRule1");
+    }
+
+    @Test
+    public void testUnknownRulesAreForgottenOnceTheServerRegistersThem() throws Exception {
+
+        ConfigureState(true, false, true);
+        File workDir = TestUtils.getTestTempDir(getClass(), "unknownIssueTypesRegistered");
+        when(_project.getFileSystem().getSonarWorkingDirectory()).thenReturn(workDir);
+        ReSharperConfiguration configuration = mock(ReSharperConfiguration.class);
+        when(configuration.getBoolean(ReSharperConstants.INCLUDE_ALL_FILES)).thenReturn(true);
+        File resultFile = TestUtils.getResource("/solution/Example/resharper-results-example_sln-missing.xml");
+        new ReSharperResultParser(_env, _project, _context, newRuleFinder(), configuration).parse(resultFile);
+
+        // the custom rule defining UnknownRule1 is registered by a restart of the server
+        final Rule customRule = Rule.create(ReSharperConstants.REPOSITORY_KEY, "UnknownRule1", "UnknownRule1")
+            .setConfigKey("ReSharperInspectCode#UnknownRule1");
+        RuleFinder ruleFinder = newRuleFinder();
+        when(ruleFinder.findAll((RuleQuery) anyObject())).thenReturn(Lists.newArrayList(_rudRule, _missingRule, customRule));
+        new ReSharperResultParser(_env, _project, _context, ruleFinder, configuration).parse(resultFile);
+
+        ArgumentCaptor<Violation> violationArg = ArgumentCaptor.forClass(Violation.class);
+        verify(_context, atLeastOnce()).saveViolation(violationArg.capture());
+        Set<Rule> rules = new HashSet<Rule>();
+        for (Violation violation : violationArg.getAllValues()) {
+            rules.add(violation.getRule());
+        }
+        assertThat(rules).contains(customRule);
+    }
+
+    @Test
+    public void testIssuesKnownAtTheBaselineAreNotReported() throws Exception {
+
+        File workDir = TestUtils.getTestTempDir(getClass(), "baseline");
+        File resultFile = TestUtils.getResource("/solution/Example/resharper-results-example_sln.xml");
+        File baselineFile = new File(workDir, "baseline.bin");
+        ReSharperIssueBaseline.main(new String[] {resultFile.getPath(), resultFile.getParent(), baselineFile.getPath()});
+
+        ReSharperConfiguration configuration = mock(ReSharperConfiguration.class);
+        when(configuration.getBoolean(ReSharperConstants.INCLUDE_ALL_FILES)).thenReturn(true);
+        when(configuration.getString(ReSharperConstants.ISSUE_BASELINE_PATH_KEY)).thenReturn(baselineFile.getAbsolutePath());
+        new ReSharperResultParser(_env, _project, _context, newRuleFinder(), configuration).parse(resultFile);
+
+        verify(_context, never()).saveViolation(any(Violation.class));
+    }
+
+    @Test
+    public void testNewOccurrencesOfAnIssueKnownAtTheBaselineAreReported() throws Exception {
+
+        File workDir = TestUtils.getTestTempDir(getClass(), "baselineOccurrences");
+        File resultFile = TestUtils.getResource("/solution/Example/resharper-results-example_sln.xml");
+        File baselineFile = new File(workDir, "baseline.bin");
+        ReSharperIssueBaseline.main(new String[] {resultFile.getPath(), resultFile.getParent(), baselineFile.getPath()});
+
+        // the same issue, twice more: same type, file, message and code
+        String report = FileUtils.readFileToString(resultFile, "UTF-8");
+        String issue = StringUtils.substringBetween(report, "<Issue ", "/>");
+        File newResultFile = new File(workDir, "resharper-results.xml");
+        FileUtils.writeStringToFile(newResultFile, StringUtils.replaceOnce(report, "<Issue " + issue + "/>",
+            StringUtils.repeat("<Issue " + issue + "/>", 3)), "UTF-8");
+
+        ReSharperConfiguration configuration = mock(ReSharperConfiguration.class);
+        when(configuration.getBoolean(ReSharperConstants.INCLUDE_ALL_FILES)).thenReturn(true);
+        when(configuration.getString(ReSharperConstants.ISSUE_BASELINE_PATH_KEY)).thenReturn(baselineFile.getAbsolutePath());
+        new ReSharperResultParser(_env, _project, _context, newRuleFinder(), configuration).parse(newResultFile);
+
+        verify(_context, times(2)).saveViolation(any(Violation.class));
+    }
+
+    @Test
+    public void testIssuesOfUnchangedProjectsAreCarriedOver() throws Exception {
+
+        File workDir = TestUtils.getTestTempDir(getClass(), "incremental");
+        when(_project.getFileSystem().getSonarWorkingDirectory()).thenReturn(workDir);
+        ReSharperConfiguration configuration = mock(ReSharperConfiguration.class);
+        when(configuration.getBoolean(ReSharperConstants.INCLUDE_ALL_FILES)).thenReturn(true);
+        when(configuration.getBoolean(ReSharperConstants.INCREMENTAL_KEY)).thenReturn(true);
+        File resultFile = TestUtils.getResource("/solution/Example/resharper-results-example_sln.xml");
+        new ReSharperResultParser(_env, _project, _context, newRuleFinder(), configuration).parse(resultFile);
+
+        // the issues of the local inspections are not read anymore, only the solution-wide ones
+        new ReSharperResultParser(_env, _project, _context, newRuleFinder(), configuration).parse(writeSolutionWideIssues(resultFile, workDir));
+
+        ArgumentCaptor<Violation> violationArg = ArgumentCaptor.forClass(Violation.class);
+        verify(_context, times(26)).saveViolation(violationArg.capture());
+        List<Violation> violations = violationArg.getAllValues();
+        assertThat(describe(violations.subList(13, 26))).isEqualTo(describe(violations.subList(0, 13)));
+    }
+
+    @Test
+    public void testIssuesAreNotCarriedOverWhenAReferencedProjectChanged() throws Exception {
+
+        File workDir = TestUtils.getTestTempDir(getClass(), "incrementalReferences");
+        when(_project.getFileSystem().getSonarWorkingDirectory()).thenReturn(workDir);
+        File projectFile = new File(workDir, "Example.Application.csproj");
+        FileUtils.writeStringToFile(projectFile, "<Project><ItemGroup><ProjectReference Include=\"Example.Core\\Example.Core.csproj\" />"
+            + "</ItemGroup></Project>", "UTF-8");
+        File referencedProjectFile = new File(workDir, "Example.Core/Example.Core.csproj");
+        FileUtils.writeStringToFile(referencedProjectFile, "<Project />", "UTF-8");
+        File referencedSourceFile = new File(workDir, "Example.Core/Money.cs");
+        FileUtils.writeStringToFile(referencedSourceFile, "class Money {}", "UTF-8");
+        VisualStudioProject referencedProject = mock(VisualStudioProject.class);
+        when(referencedProject.getProjectFile()).thenReturn(referencedProjectFile);
+        SourceFile sourceFile = mock(SourceFile.class);
+        when(sourceFile.getFile()).thenReturn(referencedSourceFile);
+        when(referencedProject.getSourceFiles()).thenReturn(Lists.newArrayList(sourceFile));
+        when(_vsProject.getProjectFile()).thenReturn(projectFile);
+        when(_env.getCurrentSolution().getProjects()).thenReturn(Lists.newArrayList(_vsProject, referencedProject));
+
+        ReSharperConfiguration configuration = mock(ReSharperConfiguration.class);
+        when(configuration.getBoolean(ReSharperConstants.INCLUDE_ALL_FILES)).thenReturn(true);
+        when(configuration.getBoolean(ReSharperConstants.INCREMENTAL_KEY)).thenReturn(true);
+        File resultFile = TestUtils.getResource("/solution/Example/resharper-results-example_sln.xml");
+        new ReSharperResultParser(_env, _project, _context, newRuleFinder(), configuration).parse(resultFile);
+
+        // a change of a referenced project may change the issues of the project, whose stored issues are then ignored
+        FileUtils.writeStringToFile(referencedSourceFile, "class Money { int amount; }", "UTF-8");
+        new ReSharperResultParser(_env, _project, _context, newRuleFinder(), configuration).parse(writeSolutionWideIssues(resultFile, workDir));
+
+        verify(_context, times(13 + 1)).saveViolation(any(Violation.class));
+    }
+
+    /**
+     * @return a copy of the given report without the issues of the local inspections
+     */
+    private static File writeSolutionWideIssues(File resultFile, File workDir) throws Exception {
+        String report = FileUtils.readFileToString(resultFile, "UTF-8");
+        File partialResultFile = new File(workDir, "resharper-results-global.xml");
+        FileUtils.writeStringToFile(partialResultFile, report.replaceAll("<Issue TypeId=\"[^\"]*(?<!\\.Global)\" [^>]*/>", ""), "UTF-8");
+        return partialResultFile;
+    }
+
+    private static Set<String> describe(List<Violation> violations) {
+        Set<String> result = new TreeSet<String>();
+        for (Violation violation : violations) {
+            result.add(violation.getRule().getKey() + "|" + violation.getResource().getKey() + "|" + violation.getLineId() + "|" + violation.getMessage());
+        }
+        return result;
+    }
+
+    @Test
+    public void testIssuesOfSharedFilesAreSavedByASingleModule() throws Exception {
+
+        ReSharperConfiguration configuration = mock(ReSharperConfiguration.class);
+        when(configuration.getBoolean(ReSharperConstants.INCLUDE_ALL_FILES)).thenReturn(true);
+        File resultFile = TestUtils.getResource("/solution/Example/resharper-results-example_sln.xml");
+        VisualStudioFileIndex fileIndex = mock(VisualStudioFileIndex.class);
+        ReSharperIssueRegistry registry = new ReSharperIssueRegistry();
+
+        // no project of the solution owns the files: the first module saves their issues
+        new ReSharperResultParser(_env, _project, _context, newRuleFinder(), configuration, fileIndex, registry).parse(resultFile);
+        new ReSharperResultParser(_env, _project, _context, newRuleFinder(), configuration, fileIndex, registry).parse(resultFile);
+        verify(_context, times(13)).saveViolation(any(Violation.class));
+
+        // the files are owned by another project analyzed by a module of the batch: that module saves their issues
+        VisualStudioProject owner = mock(VisualStudioProject.class);
+        Project ownerModule = mock(Project.class);
+        when(ownerModule.getLanguageKey()).thenReturn("cs");
+        when(_env.getCurrentSolution().getProjectFromSonarProject(ownerModule)).thenReturn(owner);
+        Project root = mock(Project.class);
+        when(root.getModules()).thenReturn(Lists.newArrayList(_project, ownerModule));
+        when(_project.getRoot()).thenReturn(root);
+        when(fileIndex.getProjects(any(File.class))).thenReturn(Lists.newArrayList(owner));
+        new ReSharperResultParser(_env, _project, _context, newRuleFinder(), configuration, fileIndex, new ReSharperIssueRegistry()).parse(resultFile);
+        verify(_context, times(13)).saveViolation(any(Violation.class));
+
+        // test projects are not analyzed: the issues of their files are not lost
+        when(owner.isTest()).thenReturn(true);
+        new ReSharperResultParser(_env, _project, _context, newRuleFinder(), configuration, fileIndex, new ReSharperIssueRegistry()).parse(resultFile);
+        verify(_context, times(26)).saveViolation(any(Violation.class));
+    }
+
+    @Test
+    public void testUnresolvedFilesAndInvalidLinesAreAssociatedToTheProject() throws Exception {
+
+        ConfigureState(true, false, true);
+        File resultFile = TestUtils.getResource("/solution/Example/resharper-results-example_sln.xml");
+        String report = FileUtils.readFileToString(resultFile, "UTF-8")
+            .replace("Offset=\"910-943\" Line=\"22\"", "Offset=\"910-943\" Line=\"n/a\"")
+            .replace("File=\"Example.Application\\Program.cs\" Offset=\"945-963\"", "File=\"..\\Outside.cs\" Offset=\"945-963\"");
+        File modifiedResultFile = new File(TestUtils.getTestTempDir(getClass(), "unresolvedFiles"), "report.xml");
+        FileUtils.writeStringToFile(modifiedResultFile, report, "UTF-8");
+        _parser.parse(modifiedResultFile);
+
+        ArgumentCaptor<Violation> violationArg = ArgumentCaptor.forClass(Violation.class);
+        verify(_context, times(13)).saveViolation(violationArg.capture());
+        List<Violation> violations = violationArg.getAllValues();
+        assertThat(violations.get(0).getResource()).isEqualTo(_project);
+        assertThat(violations.get(0).getMessage()).endsWith("Program.cs line n/a)");
+        assertThat(violations.get(1).getResource()).isEqualTo(_project);
+        assertThat(violations.get(1).getMessage()).endsWith("Outside.cs line 23)");
+        assertThat(violations.get(2).getResource().getName()).isEqualTo("Program.cs");
+    }
+
+    @Test
+    public void testIssuesAllocateNoMoreThanTheirAttributesAndViolation() throws Exception {
+
+        // the allocation counter of the current thread is specific to the HotSpot JVMs
+
+        Method allocatedBytes = findThreadAllocatedBytes();
+        Assume.assumeNotNull(allocatedBytes);
+        File workDir = TestUtils.getTestTempDir(getClass(), "allocations");
+        File smallReport = writeRepeatedIssues(new File(workDir, "small.xml"), 1000);
+        File largeReport = writeRepeatedIssues(new File(workDir, "large.xml"), 21000);
+        File baselineFile = new File(workDir, "baseline.bin");
+        ReSharperIssueBaseline.main(new String[] {TestUtils.getResource("/solution/Example/resharper-results-example_sln.xml").getPath(),
+            _env.getCurrentSolution().getSolutionDir().getPath(), baselineFile.getPath()});
+
+        for (String baselinePath : new String[] {null, baselineFile.getAbsolutePath()}) {
+            ReSharperConfiguration configuration = mock(ReSharperConfiguration.class);
+            when(configuration.getString(ReSharperConstants.ISSUE_BASELINE_PATH_KEY)).thenReturn(baselinePath);
+            for (int i = 0; i < 5; i++) {
+                // warm up, so that the measures leave out class loading and compilation
+                parseCountingViolations(configuration, largeReport, allocatedBytes);
+            }
+            long perIssue = (parseCountingViolations(configuration, largeReport, allocatedBytes)
+                - parseCountingViolations(configuration, smallReport, allocatedBytes)) / 20000;
+            // the attribute strings, the Violation and the reader internals take about half of it
+            assertThat(perIssue).isLessThan(1024);
+        }
+    }
+
+    /**
+     * @return ThreadMXBean#getThreadAllocatedBytes(long) of the HotSpot JVMs, null if not supported
+     */
+    private static Method findThreadAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        try {
+            Method method = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+            method.invoke(threadBean, Thread.currentThread().getId());
+            return method;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the bytes allocated by the parsing of the report, with a context that only counts the violations
+     */
+    private long parseCountingViolations(ReSharperConfiguration configuration, File report, Method allocatedBytes) throws Exception {
+        final int[] violationCount = new int[1];
+        SensorContext context = (SensorContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {SensorContext.class},
+            new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if ("saveViolation".equals(method.getName())) {
+                        violationCount[0]++;
+                    }
+                    return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+                }
+            });
+        ReSharperResultParser parser = new ReSharperResultParser(_env, _project, context, newRuleFinder(), configuration);
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Long threadId = Thread.currentThread().getId();
+        long before = (Long) allocatedBytes.invoke(threadBean, threadId);
+        parser.parse(report);
+        long after = (Long) allocatedBytes.invoke(threadBean, threadId);
+        assertThat(violationCount[0]).isGreaterThan(0);
+        return after - before;
+    }
+
+    /**
+     * Writes a report of issues of a single type and file, on lines 1 to 500.
+     */
+    private static File writeRepeatedIssues(File report, int issueCount) throws Exception {
+        StringBuilder content = new StringBuilder("<Report ToolsVersion=\"8.0\"><IssueTypes>"
+            + "<IssueType Id=\"RedundantUsingDirective\" Category=\"Redundancies in Code\" Description=\"Redundant using directive\" Severity=\"WARNING\" />"
+            + "</IssueTypes><Issues><Project Name=\"Example.Application\">");
+        for (int i = 0; i < issueCount; i++) {
+            content.append("<Issue TypeId=\"RedundantUsingDirective\" File=\"Example.Application\\Program.cs\" Offset=\"910-943\" Line=\"")
+                .append(i % 500 + 1).append("\" Message=\"Using directive is not required by the code and can be safely removed\" />");
+        }
+        content.append("</Project></Issues></Report>");
+        FileUtils.writeStringToFile(report, content.toString(), "UTF-8");
+        return report;
+    }
+
     private void assertViolation(Violation violation, Rule expectedRule, String expectedResourceName, int expectedLineNumber, String expectedMessage)
     {
         assertViolation(violation, expectedRule, expectedResourceName, expectedLineNumber, expectedMessage, false);
@@ -406,6 +774,23 @@ public class ReSharperResultParserTest {
 
             }
         });
+        when(ruleFinder.findAll((RuleQuery) anyObject())).thenAnswer(new Answer<Collection<Rule>>() {
+
+            public Collection<Rule> answer(InvocationOnMock iom) throws Throwable {
+                List<Rule> rules = Lists.newArrayList(_rudRule, _cnigRule, _uplRule, _suvkeRule, _suvke2Rule, _rtscRule, _missingRule);
+                Set<String> configKeys = new HashSet<String>();
+                for (Rule rule : rules) {
+                    configKeys.add(rule.getConfigKey());
+                }
+                for (ReSharperRule reSharperRule : ReSharperRuleCatalog.getDefault().getRules()) {
+                    Rule rule = reSharperRule.toSonarRule();
+                    if (!configKeys.contains(rule.getConfigKey())) {
+                        rules.add(rule);
+                    }
+                }
+                return rules;
+            }
+        });
         return ruleFinder;
     }
 
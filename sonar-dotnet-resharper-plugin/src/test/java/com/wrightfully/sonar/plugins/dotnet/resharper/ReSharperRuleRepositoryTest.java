@@ -0,0 +1,89 @@
+/*
+ * Sonar .NET Plugin :: ReSharper
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.plugins.dotnet.resharper;
+
+import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperRuleCatalog;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RulePriority;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+
+public class ReSharperRuleRepositoryTest {
+
+    private Settings settings;
+    private ReSharperRuleRepository repository;
+
+    @Before
+    public void init() {
+        settings = new Settings();
+        repository = new ReSharperRuleRepository(ReSharperConstants.REPOSITORY_KEY + "-cs", "cs", settings);
+    }
+
+    @Test
+    public void testDefaultRules() throws Exception {
+        List<Rule> rules = repository.createRules();
+
+        assertThat(rules).hasSize(ReSharperRuleCatalog.getDefault().size());
+    }
+
+    @Test
+    public void testCustomRulesOverrideAndAugmentDefaults() throws Exception {
+        settings.setProperty(ReSharperConstants.CUSTOM_RULES_PROP_KEY,
+                "<IssueType Id=\"ClassNeverInstantiated.Global\" Category=\"Custom\" Description=\"Overridden\" Severity=\"ERROR\" />" +
+                "<IssueType Id=\"MyCompany.CustomRule\" Category=\"Custom\" Description=\"First definition\" Severity=\"HINT\" />" +
+                "<IssueType Id=\"MyCompany.CustomRule\" Category=\"Custom\" Description=\"Second definition\" Severity=\"WARNING\" />");
+
+        List<Rule> rules = repository.createRules();
+
+        assertThat(rules).hasSize(ReSharperRuleCatalog.getDefault().size() + 1);
+        assertThat(rules).onProperty("key").doesNotHaveDuplicates();
+        Rule overridden = findRule(rules, "ClassNeverInstantiated.Global");
+        assertThat(overridden.getSeverity()).isEqualTo(RulePriority.BLOCKER);
+        assertThat(overridden.getDescription()).startsWith("Overridden");
+        Rule custom = findRule(rules, "MyCompany.CustomRule");
+        assertThat(custom.getDescription()).startsWith("Second definition");
+    }
+
+    @Test
+    public void testMalformedCustomRulesAreIgnored() throws Exception {
+        settings.setProperty(ReSharperConstants.CUSTOM_RULES_PROP_KEY,
+                "<IssueType Id=\"MyCompany.Broken\" Category=\"Custom\" Description=\"Broken\" Severity=\"HINT\" >");
+
+        List<Rule> rules = repository.createRules();
+
+        assertThat(rules).hasSize(ReSharperRuleCatalog.getDefault().size());
+        assertThat(findRule(rules, "MyCompany.Broken")).isNull();
+    }
+
+    private static Rule findRule(List<Rule> rules, String key) {
+        for (Rule rule : rules) {
+            if (key.equals(rule.getKey())) {
+                return rule;
+            }
+        }
+        return null;
+    }
+}
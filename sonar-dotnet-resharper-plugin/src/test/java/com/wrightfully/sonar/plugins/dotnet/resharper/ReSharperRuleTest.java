@@ -199,4 +199,28 @@ public class ReSharperRuleTest {
     }
 
 
+    @Test
+    public void testReSharperRuleRequiresSolutionWideAnalysis() throws Exception {
+        assertThat(ReSharperRule.requiresSolutionWideAnalysis("ClassNeverInstantiated.Global")).isTrue();
+        assertThat(ReSharperRule.requiresSolutionWideAnalysis("UnusedMember.Global")).isTrue();
+        assertThat(ReSharperRule.requiresSolutionWideAnalysis("UnusedMember.Local")).isFalse();
+        assertThat(ReSharperRule.requiresSolutionWideAnalysis("RedundantUsingDirective")).isFalse();
+    }
+
+    @Test
+    public void testReSharperRuleHtmlDescriptionFollowsChanges() throws Exception {
+
+        ReSharperRule reSharperRule = new ReSharperRule();
+        reSharperRule.setId("MyId");
+        reSharperRule.setDescription("A rather boring description");
+        reSharperRule.setCategory("This is my category");
+
+        String html = reSharperRule.getHtmlDescription();
+        assertThat(html).isEqualTo("A rather boring description<br />(Category: This is my category)");
+        assertThat(reSharperRule.getHtmlDescription()).isSameAs(html);
+
+        reSharperRule.setWikiLink("http://foo.bar/baz/bin");
+        assertThat(reSharperRule.getHtmlDescription()).isEqualTo("A rather boring description<br /><a href='http://foo.bar/baz/bin'>http://foo.bar/baz/bin</a><br />(Category: This is my category)");
+    }
+
 }
@@ -0,0 +1,169 @@
+/*
+ * Sonar .NET Plugin :: ReSharper
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.plugins.dotnet.resharper;
+
+import com.wrightfully.sonar.dotnet.tools.resharper.ReSharperRunner;
+import com.wrightfully.sonar.plugins.dotnet.resharper.profiles.ReSharperProfileExporter;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.ProjectFileSystem;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RuleFinder;
+import org.sonar.api.rules.RulePriority;
+import org.sonar.api.rules.RuleQuery;
+import org.sonar.plugins.dotnet.api.microsoft.MicrosoftWindowsEnvironment;
+import org.sonar.plugins.dotnet.api.microsoft.VisualStudioProject;
+import org.sonar.plugins.dotnet.api.microsoft.VisualStudioSolution;
+import org.sonar.test.TestUtils;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReSharperSensorTest {
+
+    private File workDir;
+    private Settings settings;
+    private RulesProfile profile;
+    private Project project;
+    private ReSharperSensor sensor;
+
+    @Before
+    public void init() throws Exception {
+        workDir = TestUtils.getTestTempDir(getClass(), "solution");
+
+        settings = new Settings();
+        settings.setProperty(ReSharperConstants.TIMEOUT_MINUTES_KEY, 1);
+        profile = RulesProfile.create("Sonar way", "cs");
+
+        project = mock(Project.class);
+        VisualStudioProject vsProject = mock(VisualStudioProject.class);
+        when(vsProject.getName()).thenReturn("Example.Application");
+        VisualStudioSolution solution = mock(VisualStudioSolution.class);
+        when(solution.getSolutionFile()).thenReturn(new File(workDir, "Example.sln"));
+        when(solution.getSolutionDir()).thenReturn(workDir);
+        when(solution.getProjectFromSonarProject(project)).thenReturn(vsProject);
+        MicrosoftWindowsEnvironment environment = mock(MicrosoftWindowsEnvironment.class);
+        when(environment.getCurrentSolution()).thenReturn(solution);
+        ProjectFileSystem fileSystem = mock(ProjectFileSystem.class);
+        when(fileSystem.getBasedir()).thenReturn(workDir);
+        when(fileSystem.getSonarWorkingDirectory()).thenReturn(workDir);
+        RuleFinder ruleFinder = mock(RuleFinder.class);
+        when(ruleFinder.findAll(any(RuleQuery.class))).thenReturn(Arrays.asList(
+                Rule.create(ReSharperConstants.REPOSITORY_KEY + "-cs", "ClassNeverInstantiated.Global", "ClassNeverInstantiated.Global"),
+                Rule.create(ReSharperConstants.REPOSITORY_KEY + "-cs", "MyCompany.CustomRule", "MyCompany.CustomRule")));
+
+        sensor = new ReSharperSensor.CSharpRegularReSharperSensor(fileSystem, profile,
+                new ReSharperProfileExporter.CSharpRegularReSharperProfileExporter(), mock(ReSharperResultParser.class),
+                new ReSharperConfiguration(settings), environment, ruleFinder);
+    }
+
+    private void activateRule(String name) {
+        profile.activateRule(Rule.create(ReSharperConstants.REPOSITORY_KEY + "-cs", name, name), RulePriority.MAJOR);
+    }
+
+    /**
+     * Runs the sensor with a stand-in for inspectcode that logs its arguments, and returns them.
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> inspectCodeArguments() throws Exception {
+        File executable = new File(workDir, "inspectcode.exe");
+        File argumentsLog = new File(workDir, "arguments.log");
+        FileUtils.writeStringToFile(executable, "#!/bin/sh\n"
+                + "for argument in \"$@\"; do echo \"$argument\"; done > \"" + argumentsLog.getAbsolutePath() + "\"\n");
+        executable.setExecutable(true);
+
+        sensor.launchInspectCode(project, ReSharperRunner.create(workDir.getAbsolutePath()));
+        return FileUtils.readLines(argumentsLog);
+    }
+
+    @Test
+    public void testSolutionWideAnalysisAutoFollowsTheActiveRules() throws Exception {
+        assertThat(sensor.isSolutionWideAnalysisRequired()).isFalse();
+
+        settings.setProperty(ReSharperConstants.SOLUTION_WIDE_ANALYSIS_KEY, ReSharperConstants.SOLUTION_WIDE_ANALYSIS_AUTO);
+        activateRule("MemberCanBeMadeStatic.Local");
+        assertThat(sensor.isSolutionWideAnalysisRequired()).isFalse();
+
+        activateRule("ClassNeverInstantiated.Global");
+        assertThat(sensor.isSolutionWideAnalysisRequired()).isTrue();
+    }
+
+    @Test
+    public void testSolutionWideAnalysisAlways() throws Exception {
+        settings.setProperty(ReSharperConstants.SOLUTION_WIDE_ANALYSIS_KEY, ReSharperConstants.SOLUTION_WIDE_ANALYSIS_ALWAYS);
+        activateRule("MemberCanBeMadeStatic.Local");
+
+        assertThat(sensor.isSolutionWideAnalysisRequired()).isTrue();
+    }
+
+    @Test
+    public void testSolutionWideAnalysisNever() throws Exception {
+        settings.setProperty(ReSharperConstants.SOLUTION_WIDE_ANALYSIS_KEY, ReSharperConstants.SOLUTION_WIDE_ANALYSIS_NEVER);
+        activateRule("ClassNeverInstantiated.Global");
+
+        assertThat(sensor.isSolutionWideAnalysisRequired()).isFalse();
+    }
+
+    @Test
+    public void testNoSolutionWideAnalysisIsPassedToInspectCode() throws Exception {
+        Assume.assumeTrue(File.separatorChar == '/');
+        activateRule("MemberCanBeMadeStatic.Local");
+        assertThat(inspectCodeArguments()).contains("/no-swea");
+
+        activateRule("ClassNeverInstantiated.Global");
+        assertThat(inspectCodeArguments()).excludes("/no-swea");
+    }
+
+    @Test
+    public void testGeneratedDotSettingsExtendTheSharedSettingsOfTheSolution() throws Exception {
+        Assume.assumeTrue(File.separatorChar == '/');
+        String severityKey = "/Default/CodeInspection/Highlighting/InspectionSeverities/=";
+        FileUtils.writeStringToFile(new File(workDir, "Example.sln.DotSettings"), "<wpf:ResourceDictionary xml:space=\"preserve\" "
+                + "xmlns:x=\"http://schemas.microsoft.com/winfx/2006/xaml\" xmlns:s=\"clr-namespace:System;assembly=mscorlib\" "
+                + "xmlns:ss=\"urn:shemas-jetbrains-com:settings-storage-xaml\" xmlns:wpf=\"http://schemas.microsoft.com/winfx/2006/xaml/presentation\">\n"
+                + "\t<s:Boolean x:Key=\"/Default/CodeStyle/CodeCleanup/RecentlyUsedProfile/=Example &amp; Co/@EntryValue\">True</s:Boolean>\n"
+                + "\t<s:String x:Key=\"" + severityKey + "ClassNeverInstantiated_002EGlobal/@EntryIndexedValue\">ERROR</s:String>\n"
+                + "</wpf:ResourceDictionary>");
+        profile.activateRule(Rule.create(ReSharperConstants.REPOSITORY_KEY + "-cs", "ClassNeverInstantiated.Global", "ClassNeverInstantiated.Global"),
+                RulePriority.INFO);
+
+        File dotSettingsFile = new File(workDir, ReSharperConstants.PROFILE_DOTSETTINGS_FILENAME);
+        assertThat(inspectCodeArguments()).contains("/profile=" + dotSettingsFile.getAbsolutePath());
+
+        String dotSettings = FileUtils.readFileToString(dotSettingsFile, "UTF-8");
+        assertThat(dotSettings).contains("<s:Boolean x:Key=\"/Default/CodeStyle/CodeCleanup/RecentlyUsedProfile/=Example &amp; Co/@EntryValue\">True</s:Boolean>");
+        assertThat(dotSettings).contains("<s:String x:Key=\"" + severityKey + "ClassNeverInstantiated_002EGlobal/@EntryIndexedValue\">HINT</s:String>");
+        assertThat(dotSettings).excludes(">ERROR<");
+        // inactive custom rule
+        assertThat(dotSettings).contains("<s:String x:Key=\"" + severityKey + "MyCompany_002ECustomRule/@EntryIndexedValue\">DO_NOT_SHOW</s:String>");
+    }
+
+}
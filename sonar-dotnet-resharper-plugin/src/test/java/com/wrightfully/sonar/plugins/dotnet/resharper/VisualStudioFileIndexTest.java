@@ -0,0 +1,90 @@
+/*
+ * Sonar .NET Plugin :: ReSharper
+ * Copyright (C) 2013 John M. Wright
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.wrightfully.sonar.plugins.dotnet.resharper;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.plugins.dotnet.api.microsoft.MicrosoftWindowsEnvironment;
+import org.sonar.plugins.dotnet.api.microsoft.SourceFile;
+import org.sonar.plugins.dotnet.api.microsoft.VisualStudioProject;
+import org.sonar.plugins.dotnet.api.microsoft.VisualStudioSolution;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+
+public class VisualStudioFileIndexTest {
+
+    private File solutionDir;
+    private VisualStudioProject application;
+    private VisualStudioProject tests;
+    private VisualStudioProject webSite;
+    private VisualStudioFileIndex index;
+
+    @Before
+    public void init() {
+        solutionDir = new File("target/solution");
+        application = mockProject(new File(solutionDir, "Example.Application/Program.cs"), new File(solutionDir, "Shared/Link.cs"));
+        tests = mockProject(new File(solutionDir, "Example.Tests/ProgramTest.cs"), new File(solutionDir, "Shared/Link.cs"));
+        webSite = mockProject();
+        when(webSite.contains(any(File.class))).thenReturn(true);
+
+        VisualStudioSolution solution = mock(VisualStudioSolution.class);
+        when(solution.getProjects()).thenReturn(Lists.newArrayList(application, tests, webSite));
+        MicrosoftWindowsEnvironment env = mock(MicrosoftWindowsEnvironment.class);
+        when(env.getCurrentSolution()).thenReturn(solution);
+        index = new VisualStudioFileIndex(env);
+    }
+
+    @Test
+    public void testContains() throws Exception {
+        File program = new File(solutionDir, "Example.Application\\Program.cs");
+
+        assertThat(index.contains(application, program)).isTrue();
+        assertThat(index.contains(tests, program)).isFalse();
+        assertThat(index.contains(application, new File(solutionDir, "EXAMPLE.APPLICATION/./Program.cs"))).isTrue();
+        // no source file to index: the project is asked
+        assertThat(index.contains(webSite, program)).isTrue();
+        verify(application, never()).contains(any(File.class));
+    }
+
+    @Test
+    public void testGetProjects() throws Exception {
+        assertThat(index.getProjects(new File(solutionDir, "Shared/Link.cs"))).containsOnly(application, tests);
+        assertThat(index.getProjects(new File(solutionDir, "Unknown.cs"))).isEmpty();
+    }
+
+    private static VisualStudioProject mockProject(File... files) {
+        VisualStudioProject project = mock(VisualStudioProject.class);
+        List<SourceFile> sourceFiles = Lists.newArrayList();
+        for (File file : files) {
+            SourceFile sourceFile = mock(SourceFile.class);
+            when(sourceFile.getFile()).thenReturn(file);
+            sourceFiles.add(sourceFile);
+        }
+        when(project.getSourceFiles()).thenReturn(sourceFiles);
+        return project;
+    }
+}